@@ -1,9 +1,41 @@
+import com.lumen.build.PromptHeaderAuditTask
+import com.lumen.build.SanitizeMetricsService
+import com.lumen.build.SanitizePromptHeaderTransform
 import org.gradle.api.artifacts.type.ArtifactTypeDefinition
 import org.gradle.api.attributes.Attribute
 
 plugins {
     id("com.android.application")
     id("org.jetbrains.kotlin.android")
+    id("org.jetbrains.kotlin.plugin.serialization")
+    id("com.google.devtools.ksp")
+}
+
+// Libraries whose AARs ship a prompt_header string that aapt2 rejects, as group:name coordinates.
+// Only these are re-typed below, so every other AAR resolves exactly as before and never runs the
+// transform. Run the prompt_header audit to find candidates before adding one.
+val promptHeaderModules: List<String> = providers.gradleProperty("lumen.promptHeader.modules")
+    .map { modules -> modules.split(',').map(String::trim).filter(String::isNotEmpty) }
+    .getOrElse(emptyList())
+// Extra resource rules on top of the prompt_header ones, separated by ';'. Each rule is
+// name:elementType[,elementType]:fixUp[,fixUp], e.g. share_title:string:placeholders.
+val resourceRules: List<String> = SanitizePromptHeaderTransform.DEFAULT_RULES +
+    providers.gradleProperty("lumen.resourceRules")
+        .map { rules -> rules.split(';').map(String::trim).filter(String::isNotEmpty) }
+        .getOrElse(emptyList())
+// ./gradlew :app:connectedBenchmarkAndroidTest -Plumen.benchmark=true runs the microbenchmarks.
+val benchmarkTests: Boolean = providers.gradleProperty("lumen.benchmark")
+    .map(String::toBoolean)
+    .getOrElse(false)
+val promptHeaderArtifactType = "prompt-header-aar"
+val promptHeaderSanitized: Attribute<Boolean> =
+    Attribute.of("com.lumen.promptHeaderSanitized", Boolean::class.javaObjectType)
+// Per-artifact cost of the transforms that ran, written to build/reports/prompt-header at build end.
+val promptHeaderMetrics = gradle.sharedServices.registerIfAbsent(
+    "promptHeaderTransformMetrics",
+    SanitizeMetricsService::class
+) {
+    parameters.reportDirectory.set(rootProject.layout.buildDirectory.dir("reports/prompt-header"))
 }
 
 android {
@@ -18,6 +50,15 @@ android {
         versionName = "0.1.0"
     }
 
+    // Microbenchmarks live in src/androidTestBenchmark and only run against the benchmark build
+    // type, with their own runner, when asked for; other instrumented tests keep the defaults.
+    if (benchmarkTests) {
+        testBuildType = "benchmark"
+        defaultConfig {
+            testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+        }
+    }
+
     buildTypes {
         release {
             isMinifyEnabled = false
@@ -26,6 +67,13 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Release-like and not debuggable, since debuggable builds skew benchmark numbers, but
+        // debug-signed so it installs next to the instrumentation APK.
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += "release"
+        }
     }
 
     compileOptions {
@@ -46,6 +94,12 @@ android {
         kotlinCompilerExtensionVersion = "1.5.4"
     }
 
+    testOptions {
+        unitTests {
+            isIncludeAndroidResources = true
+        }
+    }
+
     packaging {
         resources {
             excludes += "/META-INF/{AL2.0,LGPL2.1}"
@@ -53,7 +107,51 @@ android {
     }
 }
 
+// ./gradlew :app:promptHeaderAudit, then look at build/reports/prompt-header/audit.diff.
+tasks.register<PromptHeaderAuditTask>("promptHeaderAudit") {
+    group = "verification"
+    description = "Reports what the prompt_header transform would rewrite in every resolved AAR."
+    rules.set(resourceRules)
+    reportFile.set(layout.buildDirectory.file("reports/prompt-header/audit.diff"))
+    configurations
+        .filter { configuration ->
+            configuration.isCanBeResolved &&
+                (configuration.name.endsWith("CompileClasspath") ||
+                    configuration.name.endsWith("RuntimeClasspath"))
+        }
+        .forEach { configuration -> from(configuration.incoming.artifactView { lenient(true) }.artifacts) }
+}
+
 dependencies {
+    attributesSchema {
+        attribute(promptHeaderSanitized)
+    }
+
+    // Artifact types are only consulted when selecting artifacts, so re-typing the allow-listed
+    // variants leaves graph resolution untouched while routing just their AARs through the
+    // transform before AGP's own aar transforms pick them up.
+    promptHeaderModules.forEach { module ->
+        components.withModule(module) {
+            allVariants {
+                attributes {
+                    attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, promptHeaderArtifactType)
+                }
+            }
+        }
+    }
+
+    registerTransform(SanitizePromptHeaderTransform::class) {
+        from.attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, promptHeaderArtifactType)
+        to.attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, "aar")
+            .attribute(promptHeaderSanitized, true)
+        parameters {
+            rulesVersion.set(SanitizePromptHeaderTransform.RULES_VERSION)
+            rules.set(resourceRules)
+            maxParallelism.set(gradle.startParameter.maxWorkerCount)
+            metricsService.set(promptHeaderMetrics)
+        }
+    }
+
     coreLibraryDesugaring("com.android.tools:desugar_jdk_libs:2.0.3")
     implementation(platform("androidx.compose:compose-bom:2023.10.01"))
     implementation("androidx.core:core-ktx:1.12.0")
@@ -68,11 +166,24 @@ dependencies {
     implementation("androidx.navigation:navigation-compose:2.7.3")
     implementation("io.coil-kt:coil-compose:2.4.0")
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-android:1.7.3")
+    implementation("org.jetbrains.kotlinx:kotlinx-serialization-json:1.6.0")
+    implementation("androidx.room:room-runtime:2.6.1")
+    implementation("androidx.room:room-ktx:2.6.1")
+    ksp("androidx.room:room-compiler:2.6.1")
+    implementation("androidx.paging:paging-runtime-ktx:3.2.1")
+    implementation("androidx.paging:paging-compose:3.2.1")
 
     debugImplementation("androidx.compose.ui:ui-tooling")
     debugImplementation("androidx.compose.ui:ui-test-manifest")
 
     testImplementation("junit:junit:4.13.2")
     testImplementation("org.jetbrains.kotlinx:kotlinx-coroutines-test:1.7.3")
+    testImplementation("org.robolectric:robolectric:4.11.1")
+    testImplementation("androidx.test:core-ktx:1.5.0")
+    testImplementation("androidx.paging:paging-testing:3.2.1")
+
+    androidTestImplementation("androidx.benchmark:benchmark-junit4:1.2.0")
+    androidTestImplementation("androidx.test:core-ktx:1.5.0")
+    androidTestImplementation("androidx.test.ext:junit:1.1.5")
 }
 
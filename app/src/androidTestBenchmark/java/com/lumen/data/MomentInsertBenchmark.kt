@@ -0,0 +1,90 @@
+package com.lumen.data
+
+import android.content.Context
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Throughput of inserting [MOMENTS] moments one [MomentRepository.addMoment] at a time against one
+ * [MomentRepository.batch], for Room and for the in-memory repository.
+ *
+ * Run with `./gradlew :app:connectedBenchmarkAndroidTest -Plumen.benchmark=true` on a device and
+ * compare the reported times.
+ */
+@RunWith(AndroidJUnit4::class)
+class MomentInsertBenchmark {
+
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private lateinit var database: LumenDatabase
+
+    @Before
+    fun setUp() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        database = Room.inMemoryDatabaseBuilder(context, LumenDatabase::class.java).build()
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun roomAddMomentOneByOne() = benchmarkRule.measureRepeated {
+        val repository = runWithTimingDisabled { freshRoomRepository() }
+        runBlocking {
+            repeat(MOMENTS) { index -> repository.addMoment(imageUrl(index), TONE, null, ACCENT) }
+        }
+    }
+
+    @Test
+    fun roomBatch() = benchmarkRule.measureRepeated {
+        val repository = runWithTimingDisabled { freshRoomRepository() }
+        runBlocking {
+            repository.batch {
+                repeat(MOMENTS) { index -> addMoment(imageUrl(index), TONE, null, ACCENT) }
+            }
+        }
+    }
+
+    @Test
+    fun inMemoryAddMomentOneByOne() = benchmarkRule.measureRepeated {
+        val repository = runWithTimingDisabled { InMemoryMomentRepository() }
+        runBlocking {
+            repeat(MOMENTS) { index -> repository.addMoment(imageUrl(index), TONE, null, ACCENT) }
+        }
+    }
+
+    @Test
+    fun inMemoryBatch() = benchmarkRule.measureRepeated {
+        val repository = runWithTimingDisabled { InMemoryMomentRepository() }
+        runBlocking {
+            repository.batch {
+                repeat(MOMENTS) { index -> addMoment(imageUrl(index), TONE, null, ACCENT) }
+            }
+        }
+    }
+
+    private fun freshRoomRepository(): RoomMomentRepository {
+        database.clearAllTables()
+        return RoomMomentRepository(database)
+    }
+
+    private fun imageUrl(index: Int) = "https://example.com/$index.jpg"
+
+    private companion object {
+        private const val MOMENTS = 10_000
+        private const val TONE = "Golden Hour"
+        private const val ACCENT = 0xFFC3A35BL
+    }
+}
@@ -0,0 +1,10 @@
+package com.lumen
+
+import android.app.Application
+import coil.ImageLoader
+import coil.ImageLoaderFactory
+import com.lumen.image.LumenImageLoader
+
+class LumenApplication : Application(), ImageLoaderFactory {
+    override fun newImageLoader(): ImageLoader = LumenImageLoader.create(this)
+}
@@ -0,0 +1,15 @@
+package com.lumen.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+
+@Dao
+internal interface AccentColorDao {
+    @Query("SELECT accentColor FROM accent_colors WHERE contentHash = :contentHash")
+    suspend fun accentColorFor(contentHash: String): Long?
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insert(accentColor: AccentColorEntity)
+}
@@ -0,0 +1,11 @@
+package com.lumen.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/** An extracted accent color, keyed by the SHA-256 of the image bytes it was extracted from. */
+@Entity(tableName = "accent_colors")
+internal data class AccentColorEntity(
+    @PrimaryKey val contentHash: String,
+    val accentColor: Long
+)
@@ -0,0 +1,418 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.FilterOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.channels.SeekableByteChannel
+import java.util.UUID
+import java.util.zip.DataFormatException
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+/**
+ * Compact binary backups of the journal, an alternative to [JournalJson] for large journals.
+ *
+ * A backup is a header, a run of compressed blocks of up to [blockSize] moments in feed order, a
+ * block index and a trailer pointing at the index:
+ *
+ * ```
+ * "LUMB" version:u8 | (rawLength:i32 deflated-block)* | index | indexOffset:i64 "LUMB"
+ * index = blockCount:varint (offset:i64 length:i32 count:i32 newestMillis:i64 oldestMillis:i64)*
+ * ```
+ *
+ * Each block stores its moments column by column, so similar values sit next to each other for
+ * the deflater: tones and image URL prefixes (up to the last `/`) as per-block dictionaries plus
+ * indices, ids in canonical UUID form as 16 raw bytes, `createdAtMillis` as zigzag varint deltas,
+ * `accentColor` as 32 bits and captions as length-prefixed UTF-8. Blocks are self-contained, so
+ * [restore] can seek straight to the ones it needs through the index, such as only the last few
+ * months.
+ */
+class BinaryBackup(
+    private val blockSize: Int = DEFAULT_BLOCK_SIZE,
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO
+) {
+
+    /** What the index records about one block. */
+    data class BlockInfo(
+        val offset: Long,
+        val length: Int,
+        val count: Int,
+        val newestCreatedAtMillis: Long,
+        val oldestCreatedAtMillis: Long
+    )
+
+    /**
+     * Writes every moment in [repository] to [output], which is flushed but left open. Fails with
+     * an [IllegalArgumentException] for an `accentColor` that does not fit in 32 bits.
+     */
+    suspend fun export(repository: MomentRepository, output: OutputStream): Int = withContext(ioDispatcher) {
+        val counting = CountingOutputStream(output.buffered())
+        val stream = DataOutputStream(counting)
+        val deflater = Deflater()
+        val index = ArrayList<BlockInfo>()
+        var exported = 0
+        try {
+            stream.write(MAGIC)
+            stream.writeByte(FORMAT_VERSION)
+            var key: MomentKey? = null
+            do {
+                val page = repository.momentsAfter(key, blockSize)
+                if (page.isEmpty()) {
+                    break
+                }
+                val raw = encodeBlock(page)
+                val compressed = deflate(deflater, raw)
+                stream.writeInt(raw.size)
+                index += BlockInfo(
+                    offset = counting.count,
+                    length = compressed.size,
+                    count = page.size,
+                    newestCreatedAtMillis = page.first().createdAtMillis,
+                    oldestCreatedAtMillis = page.last().createdAtMillis
+                )
+                stream.write(compressed)
+                exported += page.size
+                key = page.last().key
+            } while (page.size == blockSize)
+
+            val indexOffset = counting.count
+            writeVarint(stream, index.size.toLong())
+            for (block in index) {
+                stream.writeLong(block.offset)
+                stream.writeInt(block.length)
+                stream.writeInt(block.count)
+                stream.writeLong(block.newestCreatedAtMillis)
+                stream.writeLong(block.oldestCreatedAtMillis)
+            }
+            stream.writeLong(indexOffset)
+            stream.write(MAGIC)
+            stream.flush()
+        } finally {
+            deflater.end()
+        }
+        exported
+    }
+
+    /** The block index of the backup in [channel], newest block first. */
+    suspend fun blocks(channel: SeekableByteChannel): List<BlockInfo> = withContext(ioDispatcher) {
+        readIndex(channel)
+    }
+
+    /**
+     * Adds the moments in [channel] created at or after [sinceMillis] to [repository], one block
+     * per [MomentRepository.addMoments] call. Blocks holding only older moments are never read.
+     * Returns how many moments were restored.
+     */
+    suspend fun restore(
+        channel: SeekableByteChannel,
+        repository: MomentRepository,
+        sinceMillis: Long = Long.MIN_VALUE
+    ): Int = withContext(ioDispatcher) {
+        val inflater = Inflater()
+        var restored = 0
+        try {
+            for (block in readIndex(channel)) {
+                if (block.newestCreatedAtMillis < sinceMillis) {
+                    break
+                }
+                val raw = inflate(inflater, channel, block)
+                var moments = try {
+                    decodeBlock(raw, block.count)
+                } catch (exception: BufferUnderflowException) {
+                    throw IOException("Corrupt Lumen backup: block at ${block.offset} ends early", exception)
+                }
+                if (block.oldestCreatedAtMillis < sinceMillis) {
+                    moments = moments.filter { it.createdAtMillis >= sinceMillis }
+                }
+                repository.addMoments(moments)
+                restored += moments.size
+            }
+        } finally {
+            inflater.end()
+        }
+        restored
+    }
+
+    private fun readIndex(channel: SeekableByteChannel): List<BlockInfo> {
+        val size = channel.size()
+        if (size < HEADER_SIZE + TRAILER_SIZE) {
+            throw IOException("Not a Lumen backup: only $size bytes")
+        }
+        val header = readAt(channel, 0, HEADER_SIZE)
+        checkMagic(header)
+        val version = header.get().toInt() and 0xFF
+        if (version != FORMAT_VERSION) {
+            throw IOException("Unsupported Lumen backup version $version, expected $FORMAT_VERSION")
+        }
+        val trailer = readAt(channel, size - TRAILER_SIZE, TRAILER_SIZE)
+        val indexOffset = trailer.getLong()
+        checkMagic(trailer)
+        if (indexOffset < HEADER_SIZE || indexOffset > size - TRAILER_SIZE) {
+            throw IOException("Corrupt Lumen backup: index offset $indexOffset")
+        }
+        val index = readAt(channel, indexOffset, (size - TRAILER_SIZE - indexOffset).toInt())
+        val blockCount = readVarint(index).toInt()
+        return List(blockCount) {
+            BlockInfo(
+                offset = index.getLong(),
+                length = index.getInt(),
+                count = index.getInt(),
+                newestCreatedAtMillis = index.getLong(),
+                oldestCreatedAtMillis = index.getLong()
+            )
+        }
+    }
+
+    private fun inflate(inflater: Inflater, channel: SeekableByteChannel, block: BlockInfo): ByteBuffer {
+        val rawLength = readAt(channel, block.offset - Int.SIZE_BYTES, Int.SIZE_BYTES).getInt()
+        val compressed = readAt(channel, block.offset, block.length)
+        val raw = ByteArray(rawLength)
+        inflater.reset()
+        inflater.setInput(compressed.array(), 0, block.length)
+        try {
+            var inflated = 0
+            while (inflated < rawLength) {
+                val count = inflater.inflate(raw, inflated, rawLength - inflated)
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw IOException("Corrupt Lumen backup: block at ${block.offset} is truncated")
+                }
+                inflated += count
+            }
+        } catch (exception: DataFormatException) {
+            throw IOException("Corrupt Lumen backup: block at ${block.offset}", exception)
+        }
+        return ByteBuffer.wrap(raw)
+    }
+
+    private class CountingOutputStream(out: OutputStream) : FilterOutputStream(out) {
+        var count = 0L
+            private set
+
+        override fun write(b: Int) {
+            out.write(b)
+            count++
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            out.write(b, off, len)
+            count += len
+        }
+    }
+
+    companion object {
+        const val DEFAULT_BLOCK_SIZE = 4_096
+        const val FORMAT_VERSION = 1
+
+        private val MAGIC = "LUMB".toByteArray(Charsets.US_ASCII)
+        private val HEADER_SIZE = MAGIC.size + 1
+        private val TRAILER_SIZE = Long.SIZE_BYTES + MAGIC.size
+
+        private const val UUID_TAG = 0L
+
+        internal fun encodeBlock(moments: List<Moment>): ByteArray {
+            val bytes = ByteArrayOutputStream(moments.size * 48)
+            val out = DataOutputStream(bytes)
+            writeVarint(out, moments.size.toLong())
+
+            writeDictionaryColumn(out, moments.map { it.tone })
+
+            val prefixes = moments.map { it.imageUrl.substring(0, it.imageUrl.lastIndexOf('/') + 1) }
+            writeDictionaryColumn(out, prefixes)
+            moments.forEachIndexed { index, moment ->
+                writeString(out, moment.imageUrl.substring(prefixes[index].length))
+            }
+
+            for (moment in moments) {
+                val uuid = canonicalUuid(moment.id)
+                if (uuid != null) {
+                    writeVarint(out, UUID_TAG)
+                    out.writeLong(uuid.mostSignificantBits)
+                    out.writeLong(uuid.leastSignificantBits)
+                } else {
+                    val utf8 = moment.id.toByteArray(Charsets.UTF_8)
+                    writeVarint(out, utf8.size + 1L)
+                    out.write(utf8)
+                }
+            }
+
+            var previous = 0L
+            for (moment in moments) {
+                writeVarint(out, zigzag(moment.createdAtMillis - previous))
+                previous = moment.createdAtMillis
+            }
+
+            for (moment in moments) {
+                require(moment.accentColor in 0L..0xFFFFFFFFL) {
+                    "accentColor of ${moment.id} does not fit in 32 bits: ${moment.accentColor}"
+                }
+                out.writeInt(moment.accentColor.toInt())
+            }
+
+            for (moment in moments) {
+                val caption = moment.caption
+                if (caption == null) {
+                    writeVarint(out, 0)
+                } else {
+                    val utf8 = caption.toByteArray(Charsets.UTF_8)
+                    writeVarint(out, utf8.size + 1L)
+                    out.write(utf8)
+                }
+            }
+            out.flush()
+            return bytes.toByteArray()
+        }
+
+        internal fun decodeBlock(block: ByteBuffer, expectedCount: Int): List<Moment> {
+            val count = readVarint(block).toInt()
+            if (count != expectedCount) {
+                throw IOException("Corrupt Lumen backup: block holds $count moments, not $expectedCount")
+            }
+            val tones = readDictionaryColumn(block, count)
+            val prefixes = readDictionaryColumn(block, count)
+            val urls = Array(count) { index -> prefixes[index] + readString(block) }
+            val ids = Array(count) {
+                val tag = readVarint(block)
+                if (tag == UUID_TAG) {
+                    UUID(block.getLong(), block.getLong()).toString()
+                } else {
+                    readUtf8(block, (tag - 1).toInt())
+                }
+            }
+            var previous = 0L
+            val createdAt = LongArray(count) {
+                previous += unzigzag(readVarint(block))
+                previous
+            }
+            val accents = LongArray(count) { block.getInt().toLong() and 0xFFFFFFFFL }
+            return List(count) { index ->
+                val length = readVarint(block).toInt()
+                Moment(
+                    id = ids[index],
+                    imageUrl = urls[index],
+                    tone = tones[index],
+                    caption = if (length == 0) null else readUtf8(block, length - 1),
+                    createdAtMillis = createdAt[index],
+                    accentColor = accents[index]
+                )
+            }
+        }
+
+        private fun deflate(deflater: Deflater, raw: ByteArray): ByteArray {
+            deflater.reset()
+            deflater.setInput(raw)
+            deflater.finish()
+            val compressed = ByteArrayOutputStream(raw.size / 2 + 64)
+            val buffer = ByteArray(16 * 1024)
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer))
+            }
+            return compressed.toByteArray()
+        }
+
+        /** Distinct values first, in order of first use, then one index per row. */
+        private fun writeDictionaryColumn(out: DataOutputStream, values: List<String>) {
+            val dictionary = LinkedHashMap<String, Int>()
+            val indices = values.map { value -> dictionary.getOrPut(value) { dictionary.size } }
+            writeVarint(out, dictionary.size.toLong())
+            dictionary.keys.forEach { writeString(out, it) }
+            indices.forEach { writeVarint(out, it.toLong()) }
+        }
+
+        private fun readDictionaryColumn(block: ByteBuffer, count: Int): Array<String> {
+            val dictionary = Array(readVarint(block).toInt()) { readString(block) }
+            return Array(count) {
+                val index = readVarint(block).toInt()
+                if (index >= dictionary.size) {
+                    throw IOException("Corrupt Lumen backup: dictionary index $index of ${dictionary.size}")
+                }
+                dictionary[index]
+            }
+        }
+
+        /** The UUID whose canonical form is [id], or `null` if storing it as 16 bytes would lose it. */
+        private fun canonicalUuid(id: String): UUID? {
+            if (id.length != 36) {
+                return null
+            }
+            val uuid = try {
+                UUID.fromString(id)
+            } catch (exception: IllegalArgumentException) {
+                return null
+            }
+            return uuid.takeIf { it.toString() == id }
+        }
+
+        private fun writeString(out: DataOutputStream, value: String) {
+            val utf8 = value.toByteArray(Charsets.UTF_8)
+            writeVarint(out, utf8.size.toLong())
+            out.write(utf8)
+        }
+
+        private fun readString(block: ByteBuffer): String = readUtf8(block, readVarint(block).toInt())
+
+        private fun readUtf8(block: ByteBuffer, length: Int): String {
+            if (length < 0 || length > block.remaining()) {
+                throw IOException("Corrupt Lumen backup: string of $length bytes")
+            }
+            val start = block.arrayOffset() + block.position()
+            val value = String(block.array(), start, length, Charsets.UTF_8)
+            block.position(block.position() + length)
+            return value
+        }
+
+        private fun writeVarint(out: DataOutputStream, value: Long) {
+            var remaining = value
+            while ((remaining and 0x7FL.inv()) != 0L) {
+                out.writeByte(((remaining and 0x7F) or 0x80).toInt())
+                remaining = remaining ushr 7
+            }
+            out.writeByte(remaining.toInt())
+        }
+
+        private fun readVarint(buffer: ByteBuffer): Long {
+            var value = 0L
+            var shift = 0
+            while (shift < Long.SIZE_BITS) {
+                val byte = buffer.get().toLong()
+                value = value or ((byte and 0x7F) shl shift)
+                if ((byte and 0x80) == 0L) {
+                    return value
+                }
+                shift += 7
+            }
+            throw IOException("Corrupt Lumen backup: varint longer than 10 bytes")
+        }
+
+        private fun zigzag(value: Long): Long = (value shl 1) xor (value shr 63)
+
+        private fun unzigzag(value: Long): Long = (value ushr 1) xor -(value and 1)
+
+        private fun checkMagic(buffer: ByteBuffer) {
+            for (byte in MAGIC) {
+                if (buffer.get() != byte) {
+                    throw IOException("Not a Lumen backup: bad magic")
+                }
+            }
+        }
+
+        private fun readAt(channel: SeekableByteChannel, position: Long, length: Int): ByteBuffer {
+            val buffer = ByteBuffer.allocate(length)
+            channel.position(position)
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw IOException("Corrupt Lumen backup: ends before byte ${position + length}")
+                }
+            }
+            buffer.flip()
+            return buffer
+        }
+    }
+}
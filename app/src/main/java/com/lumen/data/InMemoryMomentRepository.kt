@@ -0,0 +1,212 @@
+package com.lumen.data
+
+import androidx.paging.PagingSource
+import com.lumen.model.Moment
+import com.lumen.model.StatsPeriod
+import com.lumen.model.ToneCount
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.update
+import java.time.ZoneId
+import java.util.UUID
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+/**
+ * Keeps the moments in memory only; [seed] defaults to a few sample moments for previews.
+ *
+ * Search and tone statistics are derived from the timeline's emissions, so writes index and count
+ * their moments before updating the timeline, and each emission already sees them.
+ */
+internal class InMemoryMomentRepository(
+    seed: List<Moment> = sampleMoments(),
+    private val zone: ZoneId = ZoneId.systemDefault()
+) : MomentRepository {
+    private val moments = MutableStateFlow(Timeline.of(seed))
+    private val pagingSources = CopyOnWriteArrayList<PagingSource<*, *>>()
+    private val searchIndex = MomentSearchIndex().apply { seed.forEach(::add) }
+    private val toneCounts = ToneCountTable().apply { add(toneCountDeltas(seed, zone)) }
+    private val ids = seed.mapTo(HashSet()) { it.id }
+
+    @Volatile
+    private var sorted: Snapshot? = null
+
+    override fun observeMoments(): Flow<List<Moment>> = moments.asStateFlow()
+
+    /**
+     * The moments as [Timeline]s, so collectors can ask a snapshot what it prepended to the
+     * previous one instead of diffing the two lists.
+     */
+    fun observeTimeline(): StateFlow<Timeline> = moments.asStateFlow()
+
+    override fun observeMoments(tone: String): Flow<List<Moment>> =
+        moments.map { all -> all.filter { it.tone == tone } }
+
+    override suspend fun addMoment(
+        imageUrl: String,
+        tone: String,
+        caption: String?,
+        accentColor: Long
+    ): Moment {
+        val newMoment = newMoment(imageUrl, tone, caption, accentColor)
+        synchronized(ids) { ids += newMoment.id }
+        searchIndex.add(newMoment)
+        toneCounts.add(toneCountDeltas(listOf(newMoment), zone))
+        moments.update { it.prepend(newMoment) }
+        pagingSources.forEach { it.invalidate() }
+        return newMoment
+    }
+
+    /** Rebuilds the timeline around the updated moment; colors are set once per saved moment. */
+    override suspend fun updateAccentColor(id: String, accentColor: Long) {
+        val current = moments.value.find { it.id == id } ?: return
+        val updated = current.copy(accentColor = accentColor)
+        searchIndex.replace(current, updated)
+        moments.update { timeline -> Timeline.of(timeline.map { if (it.id == id) updated else it }) }
+        pagingSources.forEach { it.invalidate() }
+    }
+
+    /**
+     * Adds the [moments] whose ids are not held yet, so importing the same journal twice changes
+     * nothing. They are placed where Room's newest-first order puts them: in front of the timeline
+     * when they are all newer than it, or merged into a re-sorted timeline otherwise.
+     */
+    override suspend fun addMoments(moments: Collection<Moment>) {
+        val added = synchronized(ids) { moments.filter { ids.add(it.id) } }.sortedWith(NEWEST_FIRST)
+        if (added.isEmpty()) {
+            return
+        }
+        added.forEach(searchIndex::add)
+        toneCounts.add(toneCountDeltas(added, zone))
+        this.moments.update { timeline ->
+            val newest = timeline.firstOrNull()
+            if (newest == null || NEWEST_FIRST.compare(added.last(), newest) < 0) {
+                added.asReversed().fold(timeline, Timeline::prepend)
+            } else {
+                Timeline.of((timeline + added).sortedWith(NEWEST_FIRST))
+            }
+        }
+        pagingSources.forEach { it.invalidate() }
+    }
+
+    override fun pagingSource(): PagingSource<MomentKey, Moment> {
+        val source = MomentPagingSource(snapshot())
+        pagingSources += source
+        source.registerInvalidatedCallback { pagingSources -= source }
+        return source
+    }
+
+    override suspend fun momentsAfter(key: MomentKey?, limit: Int): List<Moment> {
+        val snapshot = snapshot()
+        return if (key == null) {
+            snapshot.newest(limit)
+        } else {
+            snapshot.olderThan(key.createdAtMillis, key.id, limit)
+        }
+    }
+
+    override fun searchMoments(query: String, limit: Int): Flow<List<Moment>> {
+        val terms = MomentSearch.terms(query)
+        if (terms.isEmpty()) {
+            return flowOf(emptyList())
+        }
+        return moments.map { MomentSearch.rank(searchIndex.matches(terms), terms, limit) }
+    }
+
+    override fun observeToneCounts(period: StatsPeriod): Flow<List<ToneCount>> =
+        moments.map { toneCounts.snapshot(period) }
+
+    /** The current timeline in feed order, sorted once per timeline rather than once per call. */
+    private fun snapshot(): Snapshot {
+        val timeline = moments.value
+        val cached = sorted
+        if (cached != null && cached.timeline === timeline) {
+            return cached
+        }
+        return Snapshot(timeline, timeline.sortedWith(NEWEST_FIRST)).also { sorted = it }
+    }
+
+    /** Keyset queries over one sorted copy of the list, which stays put while its source lives. */
+    private class Snapshot(
+        val timeline: Timeline,
+        private val newestFirst: List<Moment>
+    ) : MomentKeysetQueries {
+        override suspend fun newest(limit: Int): List<Moment> = newestFirst.take(limit)
+
+        override suspend fun atOrOlderThan(createdAtMillis: Long, id: String, limit: Int): List<Moment> {
+            val from = firstAtOrOlder(MomentKey(createdAtMillis, id), inclusive = true)
+            return newestFirst.subList(from, newestFirst.size).take(limit)
+        }
+
+        override suspend fun olderThan(createdAtMillis: Long, id: String, limit: Int): List<Moment> {
+            val from = firstAtOrOlder(MomentKey(createdAtMillis, id), inclusive = false)
+            return newestFirst.subList(from, newestFirst.size).take(limit)
+        }
+
+        override suspend fun newerThan(createdAtMillis: Long, id: String, limit: Int): List<Moment> =
+            newestFirst.subList(0, firstAtOrOlder(MomentKey(createdAtMillis, id), inclusive = true))
+                .asReversed()
+                .take(limit)
+
+        override suspend fun countNewerThan(createdAtMillis: Long, id: String): Int =
+            firstAtOrOlder(MomentKey(createdAtMillis, id), inclusive = true)
+
+        override suspend fun countOlderThan(createdAtMillis: Long, id: String): Int =
+            newestFirst.size - firstAtOrOlder(MomentKey(createdAtMillis, id), inclusive = false)
+
+        /** Index of the first moment at ([inclusive]) or after the key in newest-first order. */
+        private fun firstAtOrOlder(key: MomentKey, inclusive: Boolean): Int {
+            var low = 0
+            var high = newestFirst.size
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                val order = KEY_NEWEST_FIRST.compare(newestFirst[mid].key, key)
+                if (order < 0 || (order == 0 && !inclusive)) low = mid + 1 else high = mid
+            }
+            return low
+        }
+    }
+
+    private companion object {
+        private val KEY_NEWEST_FIRST: Comparator<MomentKey> =
+            compareByDescending<MomentKey> { it.createdAtMillis }.thenByDescending { it.id }
+        private val NEWEST_FIRST: Comparator<Moment> = compareBy(KEY_NEWEST_FIRST) { it.key }
+        private val HOURS_8: Long = TimeUnit.HOURS.toMillis(8)
+        private val HOURS_24: Long = TimeUnit.HOURS.toMillis(24)
+        private val HOURS_48: Long = TimeUnit.HOURS.toMillis(48)
+
+        private fun sampleMoments(): List<Moment> {
+            val now = System.currentTimeMillis()
+            return listOf(
+                Moment(
+                    id = UUID.randomUUID().toString(),
+                    imageUrl = "https://images.unsplash.com/photo-1526481280695-3c46917166ab",
+                    tone = "Soft Dawn",
+                    caption = "Slow coffee before sunrise.",
+                    createdAtMillis = now - HOURS_8,
+                    accentColor = 0xFFC3A35BL
+                ),
+                Moment(
+                    id = UUID.randomUUID().toString(),
+                    imageUrl = "https://images.unsplash.com/photo-1500530855697-b586d89ba3ee",
+                    tone = "Forest Quiet",
+                    caption = "Walked until the noise softened.",
+                    createdAtMillis = now - HOURS_24,
+                    accentColor = 0xFF2F4F4FL
+                ),
+                Moment(
+                    id = UUID.randomUUID().toString(),
+                    imageUrl = "https://images.unsplash.com/photo-1500534623283-312aade485b7",
+                    tone = "Golden Hour",
+                    caption = "Laughed until the sky blushed.",
+                    createdAtMillis = now - HOURS_48,
+                    accentColor = 0xFFC3A35BL
+                )
+            )
+        }
+    }
+}
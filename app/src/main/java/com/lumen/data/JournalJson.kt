@@ -0,0 +1,75 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.json.DecodeSequenceMode
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.decodeToSequence
+import kotlinx.serialization.json.encodeToStream
+import java.io.InputStream
+import java.io.OutputStream
+
+/**
+ * JSON backups of the journal: a top-level array of [Moment] objects.
+ *
+ * Both directions stream. Export reads the journal one keyset page at a time and encodes each moment
+ * straight to the stream; import decodes the array lazily and hands it to the repository in batches.
+ * Neither ever holds more than a page or a batch of moments, or the JSON text, in memory, however
+ * long the journal is.
+ */
+@OptIn(ExperimentalSerializationApi::class)
+class JournalJson(
+    private val pageSize: Int = DEFAULT_PAGE_SIZE,
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO
+) {
+
+    /** Writes every moment in [repository], newest first, to [output], which is flushed but left open. */
+    suspend fun export(repository: MomentRepository, output: OutputStream): Int = withContext(ioDispatcher) {
+        val stream = output.buffered()
+        var exported = 0
+        var key: MomentKey? = null
+        stream.write('['.code)
+        do {
+            val page = repository.momentsAfter(key, pageSize)
+            for (moment in page) {
+                if (exported++ > 0) {
+                    stream.write(','.code)
+                }
+                json.encodeToStream(Moment.serializer(), moment, stream)
+            }
+            key = page.lastOrNull()?.key
+        } while (page.size == pageSize)
+        stream.write(']'.code)
+        stream.flush()
+        exported
+    }
+
+    /**
+     * Adds every moment in [input] to [repository], [pageSize] at a time through
+     * [MomentRepository.addMoments]. Moments keep their ids, and that skips the ones already in the
+     * journal, so importing the same file twice adds nothing the second time. Returns how many
+     * moments were read.
+     */
+    suspend fun import(input: InputStream, repository: MomentRepository): Int = withContext(ioDispatcher) {
+        var imported = 0
+        val moments = json.decodeToSequence(
+            input.buffered(),
+            Moment.serializer(),
+            DecodeSequenceMode.ARRAY_WRAPPED
+        )
+        for (batch in moments.chunked(pageSize)) {
+            repository.addMoments(batch)
+            imported += batch.size
+        }
+        imported
+    }
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 500
+
+        private val json = Json { ignoreUnknownKeys = true }
+    }
+}
@@ -0,0 +1,94 @@
+package com.lumen.data
+
+import android.content.Context
+import androidx.room.Database
+import androidx.room.Room
+import androidx.room.RoomDatabase
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import java.time.ZoneId
+
+@Database(
+    entities = [
+        MomentEntity::class,
+        AccentColorEntity::class,
+        MomentSearchEntity::class,
+        ToneCountEntity::class
+    ],
+    version = 4,
+    exportSchema = false
+)
+internal abstract class LumenDatabase : RoomDatabase() {
+    abstract fun momentDao(): MomentDao
+
+    abstract fun accentColorDao(): AccentColorDao
+
+    abstract fun toneCountDao(): ToneCountDao
+
+    companion object {
+        private const val NAME = "lumen.db"
+
+        /** Adds the accent color cache. */
+        val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `accent_colors` (`contentHash` TEXT NOT NULL, " +
+                        "`accentColor` INTEGER NOT NULL, PRIMARY KEY(`contentHash`))"
+                )
+            }
+        }
+
+        /**
+         * Adds the search index and fills it from the existing moments, once. Room re-creates the
+         * triggers that keep it in step with `moments` after every migration.
+         */
+        val MIGRATION_2_3 = object : Migration(2, 3) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS `moments_fts` USING FTS4(`tone` TEXT NOT NULL, " +
+                        "`caption` TEXT, tokenize=unicode61, content=`moments`)"
+                )
+                db.execSQL("INSERT INTO `moments_fts`(`moments_fts`) VALUES ('rebuild')")
+            }
+        }
+
+        /**
+         * Adds the tone statistics and counts the existing moments into them, once, with days in the
+         * device's current time zone.
+         */
+        val MIGRATION_3_4 = object : Migration(3, 4) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `tone_counts` (`period` TEXT NOT NULL, " +
+                        "`startEpochDay` INTEGER NOT NULL, `tone` TEXT NOT NULL, " +
+                        "`momentCount` INTEGER NOT NULL, PRIMARY KEY(`period`, `startEpochDay`, `tone`))"
+                )
+                val counts = HashMap<ToneCountKey, Int>()
+                db.query("SELECT tone, createdAtMillis FROM moments").use { cursor ->
+                    while (cursor.moveToNext()) {
+                        counts.countTone(cursor.getString(0), cursor.getLong(1), ZoneId.systemDefault())
+                    }
+                }
+                counts.forEach { (key, count) ->
+                    db.execSQL(
+                        "INSERT INTO `tone_counts` (`period`, `startEpochDay`, `tone`, `momentCount`) " +
+                            "VALUES (?, ?, ?, ?)",
+                        arrayOf(key.period.name, key.startEpochDay, key.tone, count)
+                    )
+                }
+            }
+        }
+
+        @Volatile
+        private var instance: LumenDatabase? = null
+
+        /** The process-wide database; Room connections are expensive, so there is only ever one. */
+        fun getInstance(context: Context): LumenDatabase =
+            instance ?: synchronized(this) {
+                instance ?: Room.databaseBuilder(context.applicationContext, LumenDatabase::class.java, NAME)
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4)
+                    .build()
+                    .also { instance = it }
+            }
+    }
+}
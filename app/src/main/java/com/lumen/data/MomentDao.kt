@@ -0,0 +1,82 @@
+package com.lumen.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import com.lumen.model.Moment
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Keyset bounds are written as `createdAtMillis <= :t AND (createdAtMillis < :t OR id < :id)` rather
+ * than as a top-level OR, so SQLite uses the first term as a range on the (createdAtMillis, id) index
+ * and only applies the second to the rows sharing the key's timestamp.
+ */
+@Dao
+internal interface MomentDao : MomentKeysetQueries {
+    @Query("SELECT * FROM moments ORDER BY createdAtMillis DESC, id DESC")
+    fun observeAll(): Flow<List<Moment>>
+
+    @Query("SELECT * FROM moments WHERE tone = :tone ORDER BY createdAtMillis DESC, id DESC")
+    fun observeByTone(tone: String): Flow<List<Moment>>
+
+    @Query("SELECT * FROM moments ORDER BY createdAtMillis DESC, id DESC LIMIT :limit")
+    override suspend fun newest(limit: Int): List<Moment>
+
+    @Query(
+        "SELECT * FROM moments WHERE createdAtMillis <= :createdAtMillis " +
+            "AND (createdAtMillis < :createdAtMillis OR id <= :id) " +
+            "ORDER BY createdAtMillis DESC, id DESC LIMIT :limit"
+    )
+    override suspend fun atOrOlderThan(createdAtMillis: Long, id: String, limit: Int): List<Moment>
+
+    @Query(
+        "SELECT * FROM moments WHERE createdAtMillis <= :createdAtMillis " +
+            "AND (createdAtMillis < :createdAtMillis OR id < :id) " +
+            "ORDER BY createdAtMillis DESC, id DESC LIMIT :limit"
+    )
+    override suspend fun olderThan(createdAtMillis: Long, id: String, limit: Int): List<Moment>
+
+    @Query(
+        "SELECT * FROM moments WHERE createdAtMillis >= :createdAtMillis " +
+            "AND (createdAtMillis > :createdAtMillis OR id > :id) " +
+            "ORDER BY createdAtMillis ASC, id ASC LIMIT :limit"
+    )
+    override suspend fun newerThan(createdAtMillis: Long, id: String, limit: Int): List<Moment>
+
+    @Query(
+        "SELECT COUNT(*) FROM moments WHERE createdAtMillis >= :createdAtMillis " +
+            "AND (createdAtMillis > :createdAtMillis OR id > :id)"
+    )
+    override suspend fun countNewerThan(createdAtMillis: Long, id: String): Int
+
+    @Query(
+        "SELECT COUNT(*) FROM moments WHERE createdAtMillis <= :createdAtMillis " +
+            "AND (createdAtMillis < :createdAtMillis OR id < :id)"
+    )
+    override suspend fun countOlderThan(createdAtMillis: Long, id: String): Int
+
+    /** The newest [limit] moments matching the FTS expression [match]; Room re-runs it on inserts. */
+    @Query(
+        "SELECT moments.* FROM moments JOIN moments_fts ON moments.rowid = moments_fts.rowid " +
+            "WHERE moments_fts MATCH :match " +
+            "ORDER BY moments.createdAtMillis DESC, moments.id DESC LIMIT :limit"
+    )
+    fun observeMatches(match: String, limit: Int): Flow<List<Moment>>
+
+    @Query("SELECT COUNT(*) FROM moments")
+    suspend fun count(): Int
+
+    @Insert(entity = MomentEntity::class)
+    suspend fun insert(moment: Moment)
+
+    /**
+     * Skips moments whose id is already stored, so importing the same backup twice is harmless.
+     * Returns the row id of each moment in iteration order, or -1 for the skipped ones.
+     */
+    @Insert(entity = MomentEntity::class, onConflict = OnConflictStrategy.IGNORE)
+    suspend fun insertAll(moments: Collection<Moment>): List<Long>
+
+    @Query("UPDATE moments SET accentColor = :accentColor WHERE id = :id")
+    suspend fun updateAccentColor(id: String, accentColor: Long)
+}
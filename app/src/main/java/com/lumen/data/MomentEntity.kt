@@ -0,0 +1,28 @@
+package com.lumen.data
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Table layout for [com.lumen.model.Moment]. Rows are read straight into `Moment`, so the columns
+ * mirror its properties one to one.
+ *
+ * The feed walks `createdAtMillis` newest first with `id` as the tie-break, which the composite
+ * index serves without a sort step; the `tone` index serves per-tone queries.
+ */
+@Entity(
+    tableName = "moments",
+    indices = [
+        Index(value = ["createdAtMillis", "id"]),
+        Index(value = ["tone"])
+    ]
+)
+internal data class MomentEntity(
+    @PrimaryKey val id: String,
+    val imageUrl: String,
+    val tone: String,
+    val caption: String?,
+    val createdAtMillis: Long,
+    val accentColor: Long
+)
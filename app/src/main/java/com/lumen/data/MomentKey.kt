@@ -0,0 +1,37 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+
+/**
+ * Position of a moment in the newest-first feed order: by [createdAtMillis], then by [id] so that
+ * moments created in the same millisecond still have a strict order.
+ */
+data class MomentKey(
+    val createdAtMillis: Long,
+    val id: String
+)
+
+internal val Moment.key: MomentKey
+    get() = MomentKey(createdAtMillis, id)
+
+/**
+ * Keyset queries over the newest-first feed order. Each one seeks straight to a [MomentKey] through
+ * the (createdAtMillis, id) index instead of skipping an OFFSET's worth of rows; the counts then
+ * still step through every row they count.
+ */
+internal interface MomentKeysetQueries {
+    suspend fun newest(limit: Int): List<Moment>
+
+    /** Up to [limit] moments starting at the key, newest first. */
+    suspend fun atOrOlderThan(createdAtMillis: Long, id: String, limit: Int): List<Moment>
+
+    /** Up to [limit] moments after the key, newest first. */
+    suspend fun olderThan(createdAtMillis: Long, id: String, limit: Int): List<Moment>
+
+    /** Up to [limit] moments before the key, oldest first. */
+    suspend fun newerThan(createdAtMillis: Long, id: String, limit: Int): List<Moment>
+
+    suspend fun countNewerThan(createdAtMillis: Long, id: String): Int
+
+    suspend fun countOlderThan(createdAtMillis: Long, id: String): Int
+}
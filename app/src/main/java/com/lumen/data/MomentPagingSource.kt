@@ -0,0 +1,89 @@
+package com.lumen.data
+
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import com.lumen.model.Moment
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Pages the feed by keyset on (createdAtMillis, id): appends continue after the last loaded moment
+ * and prepends before the first, so every page costs an index seek plus its own rows however deep
+ * into the journal it is.
+ *
+ * With placeholders enabled, the list keeps its full size while only the loaded pages are held in
+ * memory. Counting the rows on either side of a position scans them, so that is done once, on the
+ * refresh: any write invalidates the source, so the positions it counted hold for its lifetime,
+ * and later pages take theirs from the page they continue.
+ */
+internal class MomentPagingSource(
+    private val queries: MomentKeysetQueries
+) : PagingSource<MomentKey, Moment>() {
+
+    /** Feed position of the first and last moment of every page loaded with placeholders. */
+    private val positions = ConcurrentHashMap<MomentKey, Int>()
+
+    /** Moments in the feed as of the refresh, or -1 until it has been counted. */
+    @Volatile
+    private var total = -1
+
+    override suspend fun load(params: LoadParams<MomentKey>): LoadResult<MomentKey, Moment> {
+        val key = params.key
+        var moments = when {
+            key == null -> queries.newest(params.loadSize)
+            params is LoadParams.Refresh ->
+                queries.atOrOlderThan(key.createdAtMillis, key.id, params.loadSize)
+            params is LoadParams.Append -> queries.olderThan(key.createdAtMillis, key.id, params.loadSize)
+            else -> queries.newerThan(key.createdAtMillis, key.id, params.loadSize).asReversed()
+        }
+        if (moments.isEmpty() && key != null && params is LoadParams.Refresh) {
+            // The anchor and everything after it were deleted; start over from the top.
+            moments = queries.newest(params.loadSize)
+        }
+        val first = moments.firstOrNull()?.key
+        val last = moments.lastOrNull()?.key
+        if (first == null || last == null) {
+            return LoadResult.Page(data = moments, prevKey = null, nextKey = null)
+        }
+
+        if (!params.placeholdersEnabled) {
+            // Without counts, a short page is the only sign of having reached an end.
+            val filled = moments.size >= params.loadSize
+            val atNewest = key == null || (params is LoadParams.Prepend && !filled)
+            val atOldest = params !is LoadParams.Prepend && !filled
+            return LoadResult.Page(
+                data = moments,
+                prevKey = first.takeUnless { atNewest },
+                nextKey = last.takeUnless { atOldest }
+            )
+        }
+        val itemsBefore = when {
+            key == null -> 0
+            params is LoadParams.Append -> positions[key]?.let { it + 1 }
+            params is LoadParams.Prepend -> positions[key]?.let { it - moments.size }
+            else -> null
+        } ?: queries.countNewerThan(first.createdAtMillis, first.id)
+        val counted = total
+        val itemsAfter = if (counted < 0) {
+            queries.countOlderThan(last.createdAtMillis, last.id)
+                .also { total = itemsBefore + moments.size + it }
+        } else {
+            (counted - itemsBefore - moments.size).coerceAtLeast(0)
+        }
+        positions[first] = itemsBefore
+        positions[last] = itemsBefore + moments.size - 1
+        return LoadResult.Page(
+            data = moments,
+            prevKey = first.takeIf { itemsBefore > 0 },
+            nextKey = last.takeIf { itemsAfter > 0 },
+            itemsBefore = itemsBefore,
+            itemsAfter = itemsAfter
+        )
+    }
+
+    /** Reloads from about half an initial load above the last visible position, to keep it in view. */
+    override fun getRefreshKey(state: PagingState<MomentKey, Moment>): MomentKey? {
+        val anchor = state.anchorPosition ?: return null
+        val start = (anchor - state.config.initialLoadSize / 2).coerceAtLeast(0)
+        return state.closestItemToPosition(start)?.key
+    }
+}
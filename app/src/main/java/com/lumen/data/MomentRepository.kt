@@ -1,71 +1,105 @@
 package com.lumen.data
 
+import androidx.paging.PagingSource
 import com.lumen.model.Moment
+import com.lumen.model.StatsPeriod
+import com.lumen.model.ToneCount
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.MutableStateFlow
-import kotlinx.coroutines.flow.asStateFlow
-import kotlinx.coroutines.flow.update
 import java.util.UUID
-import java.util.concurrent.TimeUnit
 
 /**
- * Simple in-memory repository to power the MVP prototype.
+ * Source of the journal's moments, newest first.
  */
-class MomentRepository {
-    private val moments = MutableStateFlow(sampleMoments())
+interface MomentRepository {
+    fun observeMoments(): Flow<List<Moment>>
 
-    fun observeMoments(): Flow<List<Moment>> = moments.asStateFlow()
+    fun observeMoments(tone: String): Flow<List<Moment>>
 
-    fun addMoment(
+    /** A fresh source for the newest-first feed; it invalidates itself when the moments change. */
+    fun pagingSource(): PagingSource<MomentKey, Moment>
+
+    /** Up to [limit] moments following [key] in the feed order, or the newest ones for `null`. */
+    suspend fun momentsAfter(key: MomentKey?, limit: Int): List<Moment>
+
+    /**
+     * Up to [limit] moments with a tone or caption word starting with each word of [query], best
+     * match first, re-emitted whenever moments are added. Whole words and tone matches rank above
+     * prefixes and caption matches; only the newest few hundred matches are ranked.
+     */
+    fun searchMoments(query: String, limit: Int): Flow<List<Moment>>
+
+    /**
+     * How often each tone was captured per [period], oldest period first. The counts are kept up to
+     * date as moments are added, including imports, instead of being recomputed from the journal.
+     */
+    fun observeToneCounts(period: StatsPeriod): Flow<List<ToneCount>>
+
+    /** Adds a moment captured now and returns it as stored. */
+    suspend fun addMoment(
         imageUrl: String,
         tone: String,
         caption: String?,
         accentColor: Long
-    ) {
-        val newMoment = Moment(
-            id = UUID.randomUUID().toString(),
-            imageUrl = imageUrl,
-            tone = tone,
-            caption = caption,
-            createdAtMillis = System.currentTimeMillis(),
-            accentColor = accentColor
-        )
-        moments.update { listOf(newMoment) + it }
+    ): Moment
+
+    /**
+     * Sets the accent color of the moment with [id], for colors worked out after the moment was
+     * saved. Does nothing if there is no such moment.
+     */
+    suspend fun updateAccentColor(id: String, accentColor: Long)
+
+    /**
+     * Adds [moments] as they are, keeping their ids and timestamps, in one write: collectors see a
+     * single emission and the database a single transaction. Meant for imports, so moments whose id
+     * is already stored are skipped rather than added again.
+     */
+    suspend fun addMoments(moments: Collection<Moment>)
+
+    /**
+     * Runs [block] and then applies everything it added through [addMoments], so the whole batch
+     * lands at once or, if [block] throws, not at all.
+     */
+    suspend fun <R> batch(block: suspend MomentBatch.() -> R): R {
+        val batch = MomentBatch()
+        val result = batch.block()
+        addMoments(batch.moments)
+        return result
     }
+}
+
+/** Collects the moments of one [MomentRepository.batch]; nothing is written until the block ends. */
+class MomentBatch internal constructor() {
+    internal val moments = ArrayList<Moment>()
 
-    private fun sampleMoments(): List<Moment> {
-        val now = System.currentTimeMillis()
-        return listOf(
-            Moment(
-                id = UUID.randomUUID().toString(),
-                imageUrl = "https://images.unsplash.com/photo-1526481280695-3c46917166ab",
-                tone = "Soft Dawn",
-                caption = "Slow coffee before sunrise.",
-                createdAtMillis = now - HOURS_8,
-                accentColor = 0xFFC3A35BL
-            ),
-            Moment(
-                id = UUID.randomUUID().toString(),
-                imageUrl = "https://images.unsplash.com/photo-1500530855697-b586d89ba3ee",
-                tone = "Forest Quiet",
-                caption = "Walked until the noise softened.",
-                createdAtMillis = now - HOURS_24,
-                accentColor = 0xFF2F4F4FL
-            ),
-            Moment(
-                id = UUID.randomUUID().toString(),
-                imageUrl = "https://images.unsplash.com/photo-1500534623283-312aade485b7",
-                tone = "Golden Hour",
-                caption = "Laughed until the sky blushed.",
-                createdAtMillis = now - HOURS_48,
-                accentColor = 0xFFC3A35BL
-            )
-        )
+    fun addMoment(
+        imageUrl: String,
+        tone: String,
+        caption: String?,
+        accentColor: Long
+    ) {
+        moments += newMoment(imageUrl, tone, caption, accentColor)
     }
 
-    private companion object {
-        private val HOURS_8: Long = TimeUnit.HOURS.toMillis(8)
-        private val HOURS_24: Long = TimeUnit.HOURS.toMillis(24)
-        private val HOURS_48: Long = TimeUnit.HOURS.toMillis(48)
+    fun add(moment: Moment) {
+        moments += moment
     }
 }
+
+/**
+ * Simple in-memory repository seeded with sample moments, for previews and tests.
+ */
+fun MomentRepository(): MomentRepository = InMemoryMomentRepository()
+
+internal fun newMoment(
+    imageUrl: String,
+    tone: String,
+    caption: String?,
+    accentColor: Long
+): Moment = Moment(
+    id = UUID.randomUUID().toString(),
+    imageUrl = imageUrl,
+    tone = tone,
+    caption = caption,
+    createdAtMillis = System.currentTimeMillis(),
+    accentColor = accentColor
+)
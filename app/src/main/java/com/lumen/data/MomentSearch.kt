@@ -0,0 +1,74 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import java.text.Normalizer
+import java.util.Locale
+
+/**
+ * Tokenizing and ranking shared by the search of both repositories.
+ *
+ * Words are split and folded like SQLite's `unicode61` tokenizer does it, case- and accent-
+ * insensitively, so the in-memory index and the FTS table match the same moments. Every query word
+ * is a prefix term, and a moment matches when each of them starts some word of its tone or caption.
+ */
+internal object MomentSearch {
+    /** How many of the newest matches are ranked; older ones are left out of the results. */
+    const val MAX_CANDIDATES = 500
+
+    private const val TONE_WORD = 4
+    private const val TONE_PREFIX = 3
+    private const val CAPTION_WORD = 2
+    private const val CAPTION_PREFIX = 1
+
+    private val SEPARATORS = Regex("[^\\p{L}\\p{N}]+")
+    private val COMBINING_MARKS = Regex("\\p{Mn}+")
+    private val NEWEST_FIRST: Comparator<Moment> =
+        compareByDescending<Moment> { it.createdAtMillis }.thenByDescending { it.id }
+
+    fun tokens(text: String?): List<String> {
+        if (text.isNullOrEmpty()) {
+            return emptyList()
+        }
+        val folded = COMBINING_MARKS.replace(Normalizer.normalize(text, Normalizer.Form.NFD), "")
+        return folded.lowercase(Locale.ROOT).split(SEPARATORS).filter { it.isNotEmpty() }
+    }
+
+    /** The distinct prefix terms of [query]; empty when it has no words to search for. */
+    fun terms(query: String): List<String> = tokens(query).distinct()
+
+    /**
+     * [terms] as an FTS `MATCH` expression. They only ever contain letters and digits, so they
+     * cannot be mistaken for query syntax, and lowercase `and`/`or` are plain words to FTS.
+     */
+    fun matchExpression(terms: List<String>): String = terms.joinToString(" ") { "$it*" }
+
+    /**
+     * Up to [limit] of the newest [MAX_CANDIDATES] [candidates], best match first: a term scores
+     * more for a whole word than a prefix, and more in the tone than in the caption. Ties go to the
+     * newest moment.
+     */
+    fun rank(candidates: Collection<Moment>, terms: List<String>, limit: Int): List<Moment> =
+        candidates.sortedWith(NEWEST_FIRST)
+            .take(MAX_CANDIDATES)
+            .map { moment -> moment to score(moment, terms) }
+            .sortedByDescending { (_, score) -> score }
+            .take(limit)
+            .map { (moment, _) -> moment }
+
+    private fun score(moment: Moment, terms: List<String>): Int {
+        val tone = tokens(moment.tone)
+        val caption = tokens(moment.caption)
+        return terms.sumOf { term ->
+            maxOf(
+                weight(tone, term, TONE_WORD, TONE_PREFIX),
+                weight(caption, term, CAPTION_WORD, CAPTION_PREFIX)
+            )
+        }
+    }
+
+    private fun weight(words: List<String>, term: String, word: Int, prefix: Int): Int = when {
+        term in words -> word
+        words.any { it.startsWith(term) } -> prefix
+        else -> 0
+    }
+}
@@ -0,0 +1,16 @@
+package com.lumen.data
+
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+
+/**
+ * Full-text index over the tone and caption of [MomentEntity]. It stores no text of its own: Room
+ * keeps it in step with `moments` through triggers, so each insert indexes just the new row.
+ */
+@Fts4(contentEntity = MomentEntity::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "moments_fts")
+internal data class MomentSearchEntity(
+    val tone: String,
+    val caption: String?
+)
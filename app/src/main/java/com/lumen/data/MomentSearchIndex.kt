@@ -0,0 +1,49 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import java.util.TreeMap
+
+/**
+ * Inverted index from the words of each moment's tone and caption to the moments containing them,
+ * for [InMemoryMomentRepository]. Words are kept sorted, so a prefix term is a range scan over the
+ * words it completes to. Moments are indexed one by one as they are added; nothing is rebuilt.
+ */
+internal class MomentSearchIndex {
+    private val postings = TreeMap<String, MutableList<Moment>>()
+
+    @Synchronized
+    fun add(moment: Moment) {
+        val words = (MomentSearch.tokens(moment.tone) + MomentSearch.tokens(moment.caption)).toSet()
+        for (word in words) {
+            postings.getOrPut(word) { ArrayList() } += moment
+        }
+    }
+
+    /** Swaps [old] for [new], which has the same tone and caption, wherever [old] is indexed. */
+    @Synchronized
+    fun replace(old: Moment, new: Moment) {
+        val words = (MomentSearch.tokens(old.tone) + MomentSearch.tokens(old.caption)).toSet()
+        for (word in words) {
+            postings[word]?.replaceAll { if (it == old) new else it }
+        }
+    }
+
+    /** The moments having a word that starts with each of [terms]. */
+    @Synchronized
+    fun matches(terms: List<String>): Set<Moment> {
+        var matches: Set<Moment>? = null
+        // Longer terms complete to fewer words, so the intersection starts small.
+        for (term in terms.sortedByDescending { it.length }) {
+            val previous = matches
+            val next = HashSet<Moment>()
+            for (moments in postings.subMap(term, true, term + Char.MAX_VALUE, false).values) {
+                moments.filterTo(next) { previous == null || it in previous }
+            }
+            if (next.isEmpty()) {
+                return emptySet()
+            }
+            matches = next
+        }
+        return matches.orEmpty()
+    }
+}
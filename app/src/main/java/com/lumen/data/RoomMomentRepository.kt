@@ -0,0 +1,103 @@
+package com.lumen.data
+
+import android.content.Context
+import androidx.paging.PagingSource
+import androidx.room.InvalidationTracker
+import androidx.room.withTransaction
+import com.lumen.model.Moment
+import com.lumen.model.StatsPeriod
+import com.lumen.model.ToneCount
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.map
+import java.time.ZoneId
+
+/**
+ * Repository backed by the on-device Room database, so the journal survives process death.
+ *
+ * Reads are `Flow`s that Room re-queries whenever the table changes. Writes are suspending DAO
+ * calls, which Room runs on its own executor, so they are safe to call from the main thread. Each
+ * write also bumps the `tone_counts` cells of the moments it stores, in the same transaction, with
+ * days starting at midnight in [zone].
+ */
+internal class RoomMomentRepository(
+    private val database: LumenDatabase,
+    private val zone: ZoneId = ZoneId.systemDefault()
+) : MomentRepository {
+
+    constructor(context: Context) : this(LumenDatabase.getInstance(context))
+
+    private val dao = database.momentDao()
+    private val toneCounts = database.toneCountDao()
+
+    override fun observeMoments(): Flow<List<Moment>> = dao.observeAll()
+
+    override fun observeMoments(tone: String): Flow<List<Moment>> = dao.observeByTone(tone)
+
+    override fun pagingSource(): PagingSource<MomentKey, Moment> {
+        val source = MomentPagingSource(dao)
+        val observer = object : InvalidationTracker.Observer(MOMENTS_TABLE) {
+            override fun onInvalidated(tables: Set<String>) {
+                source.invalidate()
+            }
+        }
+        database.invalidationTracker.addObserver(observer)
+        source.registerInvalidatedCallback { database.invalidationTracker.removeObserver(observer) }
+        return source
+    }
+
+    override suspend fun momentsAfter(key: MomentKey?, limit: Int): List<Moment> =
+        if (key == null) dao.newest(limit) else dao.olderThan(key.createdAtMillis, key.id, limit)
+
+    override fun searchMoments(query: String, limit: Int): Flow<List<Moment>> {
+        val terms = MomentSearch.terms(query)
+        if (terms.isEmpty()) {
+            return flowOf(emptyList())
+        }
+        return dao.observeMatches(MomentSearch.matchExpression(terms), MomentSearch.MAX_CANDIDATES)
+            .map { matches -> MomentSearch.rank(matches, terms, limit) }
+    }
+
+    override fun observeToneCounts(period: StatsPeriod): Flow<List<ToneCount>> = toneCounts.observe(period)
+
+    override suspend fun addMoment(
+        imageUrl: String,
+        tone: String,
+        caption: String?,
+        accentColor: Long
+    ): Moment {
+        val moment = newMoment(imageUrl, tone, caption, accentColor)
+        database.withTransaction {
+            dao.insert(moment)
+            countTones(listOf(moment))
+        }
+        return moment
+    }
+
+    override suspend fun updateAccentColor(id: String, accentColor: Long) {
+        dao.updateAccentColor(id, accentColor)
+    }
+
+    override suspend fun addMoments(moments: Collection<Moment>) {
+        if (moments.isEmpty()) {
+            return
+        }
+        database.withTransaction {
+            // Only the moments that were not already stored are counted.
+            val rowIds = dao.insertAll(moments)
+            countTones(moments.filterIndexed { index, _ -> rowIds[index] != -1L })
+        }
+    }
+
+    private suspend fun countTones(added: List<Moment>) {
+        val deltas = toneCountDeltas(added, zone)
+        toneCounts.insertIfAbsent(
+            deltas.keys.map { key -> ToneCountEntity(key.period, key.startEpochDay, key.tone, momentCount = 0) }
+        )
+        deltas.forEach { (key, delta) -> toneCounts.add(key.period, key.startEpochDay, key.tone, delta) }
+    }
+
+    private companion object {
+        private const val MOMENTS_TABLE = "moments"
+    }
+}
@@ -0,0 +1,94 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+
+/**
+ * Immutable, newest-first list of moments that grows at the front in O(1) and shares everything
+ * but its first chunk with the timeline it was derived from.
+ *
+ * Moments live in fixed-size chunks linked from newest to oldest. Prepending copies at most the
+ * head chunk, never the rest, so each snapshot a `StateFlow` emits costs a bounded amount no
+ * matter how long the journal is, and older snapshots stay valid. Indexing walks the chunks, so
+ * [get] is O(n / [CHUNK_SIZE]); iteration is O(n).
+ */
+internal class Timeline private constructor(
+    private val head: Node?
+) : AbstractList<Moment>() {
+
+    /** One chunk, stored oldest first so prepending is an append, plus every older chunk. */
+    private class Node(
+        val chunk: Array<Moment>,
+        val next: Node?
+    ) {
+        /** Moments in this chunk and every older one. */
+        val size: Int = chunk.size + (next?.size ?: 0)
+    }
+
+    override val size: Int
+        get() = head?.size ?: 0
+
+    override fun get(index: Int): Moment {
+        if (index < 0 || index >= size) {
+            throw IndexOutOfBoundsException("Index $index out of bounds for size $size")
+        }
+        var node = head!!
+        var offset = index
+        while (offset >= node.chunk.size) {
+            offset -= node.chunk.size
+            node = node.next!!
+        }
+        return node.chunk[node.chunk.size - 1 - offset]
+    }
+
+    override fun iterator(): Iterator<Moment> = object : Iterator<Moment> {
+        private var node = head
+        private var offset = head?.chunk?.size ?: 0
+
+        override fun hasNext(): Boolean = node != null
+
+        override fun next(): Moment {
+            val current = node ?: throw NoSuchElementException()
+            val moment = current.chunk[--offset]
+            if (offset == 0) {
+                node = current.next
+                offset = node?.chunk?.size ?: 0
+            }
+            return moment
+        }
+    }
+
+    /** This timeline with [moment] in front of it. */
+    fun prepend(moment: Moment): Timeline {
+        val current = head
+        return if (current == null || current.chunk.size == CHUNK_SIZE) {
+            Timeline(Node(arrayOf(moment), current))
+        } else {
+            Timeline(Node(arrayOf(*current.chunk, moment), current.next))
+        }
+    }
+
+    /**
+     * The moments this timeline has in front of [earlier] when it was derived from it by
+     * prepending, newest first; or `null` when [earlier] is not a suffix of this timeline, in which
+     * case collectors have to look at the whole list.
+     */
+    fun prependedSince(earlier: Timeline): List<Moment>? {
+        val prepended = size - earlier.size
+        return when {
+            prepended < 0 -> null
+            earlier.isEmpty() -> this
+            this[prepended] !== earlier[0] -> null
+            else -> subList(0, prepended)
+        }
+    }
+
+    companion object {
+        const val CHUNK_SIZE = 32
+
+        val EMPTY = Timeline(null)
+
+        /** A timeline holding [newestFirst] in the same order. */
+        fun of(newestFirst: List<Moment>): Timeline =
+            newestFirst.asReversed().fold(EMPTY) { timeline, moment -> timeline.prepend(moment) }
+    }
+}
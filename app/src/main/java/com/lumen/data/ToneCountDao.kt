@@ -0,0 +1,28 @@
+package com.lumen.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import com.lumen.model.StatsPeriod
+import com.lumen.model.ToneCount
+import kotlinx.coroutines.flow.Flow
+
+/** Bumping a cell is an insert-if-absent and an update, since UPSERT needs a newer SQLite than API 26's. */
+@Dao
+internal interface ToneCountDao {
+    @Query(
+        "SELECT period, startEpochDay, tone, momentCount AS count FROM tone_counts " +
+            "WHERE period = :period ORDER BY startEpochDay, tone"
+    )
+    fun observe(period: StatsPeriod): Flow<List<ToneCount>>
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    suspend fun insertIfAbsent(counts: Collection<ToneCountEntity>)
+
+    @Query(
+        "UPDATE tone_counts SET momentCount = momentCount + :delta " +
+            "WHERE period = :period AND startEpochDay = :startEpochDay AND tone = :tone"
+    )
+    suspend fun add(period: StatsPeriod, startEpochDay: Long, tone: String, delta: Int)
+}
@@ -0,0 +1,16 @@
+package com.lumen.data
+
+import androidx.room.Entity
+import com.lumen.model.StatsPeriod
+
+/**
+ * One cell of the materialized tone statistics: [momentCount] moments of [tone] in the [period]
+ * starting on [startEpochDay]. Written together with the moments it counts, never recomputed.
+ */
+@Entity(tableName = "tone_counts", primaryKeys = ["period", "startEpochDay", "tone"])
+internal data class ToneCountEntity(
+    val period: StatsPeriod,
+    val startEpochDay: Long,
+    val tone: String,
+    val momentCount: Int
+)
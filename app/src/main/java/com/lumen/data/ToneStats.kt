@@ -0,0 +1,62 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import com.lumen.model.StatsPeriod
+import com.lumen.model.ToneCount
+import java.time.DayOfWeek
+import java.time.Instant
+import java.time.LocalDate
+import java.time.ZoneId
+import java.time.temporal.TemporalAdjusters
+
+/** The cells of the tone statistics, by period, first day and tone. */
+internal data class ToneCountKey(
+    val period: StatsPeriod,
+    val startEpochDay: Long,
+    val tone: String
+)
+
+/** The first day of the period [date] falls in. */
+internal fun StatsPeriod.startOf(date: LocalDate): LocalDate = when (this) {
+    StatsPeriod.DAY -> date
+    StatsPeriod.WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+    StatsPeriod.MONTH -> date.withDayOfMonth(1)
+}
+
+/**
+ * How much each cell grows when [moments] are added: one per moment and period, so the cost is
+ * proportional to the moments added rather than to the journal.
+ */
+internal fun toneCountDeltas(moments: Iterable<Moment>, zone: ZoneId): Map<ToneCountKey, Int> {
+    val deltas = HashMap<ToneCountKey, Int>()
+    for (moment in moments) {
+        deltas.countTone(moment.tone, moment.createdAtMillis, zone)
+    }
+    return deltas
+}
+
+/** Adds one moment of [tone], created at [createdAtMillis], to the cell of each period. */
+internal fun MutableMap<ToneCountKey, Int>.countTone(tone: String, createdAtMillis: Long, zone: ZoneId) {
+    val date = Instant.ofEpochMilli(createdAtMillis).atZone(zone).toLocalDate()
+    for (period in StatsPeriod.values()) {
+        val key = ToneCountKey(period, period.startOf(date).toEpochDay(), tone)
+        this[key] = (this[key] ?: 0) + 1
+    }
+}
+
+/** The in-memory counterpart of the `tone_counts` table. Thread-safe. */
+internal class ToneCountTable {
+    private val counts = HashMap<ToneCountKey, Int>()
+
+    @Synchronized
+    fun add(deltas: Map<ToneCountKey, Int>) {
+        deltas.forEach { (key, delta) -> counts[key] = (counts[key] ?: 0) + delta }
+    }
+
+    /** The counts of [period], oldest first and then by tone, like the table's query. */
+    @Synchronized
+    fun snapshot(period: StatsPeriod): List<ToneCount> =
+        counts.mapNotNull { (key, count) ->
+            if (key.period == period) ToneCount(period, key.startEpochDay, key.tone, count) else null
+        }.sortedWith(compareBy<ToneCount> { it.startEpochDay }.thenBy { it.tone })
+}
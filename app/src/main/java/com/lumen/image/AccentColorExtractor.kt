@@ -0,0 +1,165 @@
+package com.lumen.image
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.net.Uri
+import com.lumen.data.AccentColorDao
+import com.lumen.data.AccentColorEntity
+import com.lumen.data.LumenDatabase
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.net.HttpURLConnection
+import java.net.URL
+import java.security.MessageDigest
+
+/** Picks the accent color a new moment is themed with. */
+fun interface AccentColorSource {
+    suspend fun accentColorFor(imageUrl: String): Long
+}
+
+/**
+ * Extracts accent colors from images with [PaletteQuantizer], on a downsampled decode run on a
+ * background dispatcher.
+ *
+ * Results are cached by the SHA-256 of the image bytes, first in memory and then in [Store], so the
+ * same picture is only ever quantized once, whatever URL it is imported from. Images that cannot be
+ * read or decoded get [DEFAULT_ACCENT_COLOR].
+ */
+class AccentColorExtractor internal constructor(
+    private val reader: ImageReader,
+    private val decoder: PixelDecoder,
+    private val store: Store,
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO,
+    private val computeDispatcher: CoroutineDispatcher = Dispatchers.Default,
+    private val memoryEntries: Int = DEFAULT_MEMORY_ENTRIES
+) : AccentColorSource {
+
+    /** Reads the encoded image behind a URL, or `null` if there is none. Called on the IO dispatcher. */
+    fun interface ImageReader {
+        fun read(imageUrl: String): ByteArray?
+    }
+
+    /** Decodes [bytes] to ARGB pixels at no more than about twice [maxEdgePx] per side, or `null`. */
+    fun interface PixelDecoder {
+        fun decode(bytes: ByteArray, maxEdgePx: Int): IntArray?
+    }
+
+    /** Persistent accent colors by content hash. */
+    interface Store {
+        suspend fun get(contentHash: String): Long?
+
+        suspend fun put(contentHash: String, accentColor: Long)
+    }
+
+    private val memory = object : LinkedHashMap<String, Long>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Long>): Boolean =
+            size > memoryEntries
+    }
+
+    override suspend fun accentColorFor(imageUrl: String): Long {
+        val bytes = withContext(ioDispatcher) { reader.read(imageUrl) } ?: return DEFAULT_ACCENT_COLOR
+        val contentHash = withContext(computeDispatcher) { sha256(bytes) }
+        synchronized(memory) { memory[contentHash] }?.let { return it }
+        val accentColor = store.get(contentHash) ?: withContext(computeDispatcher) {
+            val pixels = decoder.decode(bytes, SAMPLE_EDGE_PX) ?: return@withContext null
+            val rgb = PaletteQuantizer.accentColor(pixels, DEFAULT_ACCENT_COLOR.toInt())
+            (rgb.toLong() and 0xFFFFFFFFL).also { store.put(contentHash, it) }
+        } ?: return DEFAULT_ACCENT_COLOR
+        synchronized(memory) { memory[contentHash] = accentColor }
+        return accentColor
+    }
+
+    companion object {
+        const val DEFAULT_ACCENT_COLOR = 0xFFC3A35BL
+        const val DEFAULT_MEMORY_ENTRIES = 256
+
+        /** Palettes barely change below this size, and quantizing it takes well under a millisecond. */
+        const val SAMPLE_EDGE_PX = 112
+
+        private const val MAX_IMAGE_BYTES = 32 * 1024 * 1024
+
+        /** Connect and per-read timeout for remote images; a timeout falls back to the default. */
+        private const val NETWORK_TIMEOUT_MS = 10_000
+
+        fun create(context: Context): AccentColorExtractor {
+            val appContext = context.applicationContext
+            return AccentColorExtractor(
+                reader = { imageUrl -> readImage(appContext, imageUrl) },
+                decoder = ::decodeSampled,
+                store = RoomStore(LumenDatabase.getInstance(appContext).accentColorDao())
+            )
+        }
+
+        private fun sha256(bytes: ByteArray): String =
+            MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { "%02x".format(it) }
+
+        private fun readImage(context: Context, imageUrl: String): ByteArray? = try {
+            val uri = Uri.parse(imageUrl)
+            val stream: InputStream? = when (uri.scheme) {
+                "http", "https" -> (URL(imageUrl).openConnection() as HttpURLConnection).run {
+                    connectTimeout = NETWORK_TIMEOUT_MS
+                    readTimeout = NETWORK_TIMEOUT_MS
+                    inputStream
+                }
+                else -> context.contentResolver.openInputStream(uri)
+            }
+            stream?.use(::readCapped)
+        } catch (exception: IOException) {
+            null
+        } catch (exception: SecurityException) {
+            null
+        }
+
+        private fun readCapped(input: InputStream): ByteArray? {
+            val output = ByteArrayOutputStream()
+            val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) {
+                    return output.toByteArray()
+                }
+                if (output.size() + read > MAX_IMAGE_BYTES) {
+                    return null
+                }
+                output.write(buffer, 0, read)
+            }
+        }
+
+        private fun decodeSampled(bytes: ByteArray, maxEdgePx: Int): IntArray? {
+            val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.size, bounds)
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                return null
+            }
+            var sampleSize = 1
+            while (maxOf(bounds.outWidth, bounds.outHeight) / (sampleSize * 2) >= maxEdgePx) {
+                sampleSize *= 2
+            }
+            val options = BitmapFactory.Options().apply {
+                inSampleSize = sampleSize
+                inPreferredConfig = Bitmap.Config.ARGB_8888
+            }
+            val bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.size, options) ?: return null
+            return try {
+                IntArray(bitmap.width * bitmap.height).also { pixels ->
+                    bitmap.getPixels(pixels, 0, bitmap.width, 0, 0, bitmap.width, bitmap.height)
+                }
+            } finally {
+                bitmap.recycle()
+            }
+        }
+    }
+
+    private class RoomStore(private val dao: AccentColorDao) : Store {
+        override suspend fun get(contentHash: String): Long? = dao.accentColorFor(contentHash)
+
+        override suspend fun put(contentHash: String, accentColor: Long) {
+            dao.insert(AccentColorEntity(contentHash, accentColor))
+        }
+    }
+}
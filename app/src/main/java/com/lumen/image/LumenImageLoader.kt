@@ -0,0 +1,38 @@
+package com.lumen.image
+
+import android.content.Context
+import coil.ImageLoader
+import coil.disk.DiskCache
+import coil.memory.MemoryCache
+
+/**
+ * Builds the app's [ImageLoader]: grid thumbnails come from [ThumbnailFetcher] and its own disk
+ * cache, and decoded bitmaps share one memory cache budget.
+ */
+object LumenImageLoader {
+    /** Share of the app's memory class the decoded-bitmap memory cache may use. */
+    const val MEMORY_CACHE_PERCENT = 0.20
+    const val THUMBNAIL_CACHE_BYTES = 64L * 1024 * 1024
+    private const val THUMBNAIL_DIRECTORY = "thumbnails"
+
+    fun create(context: Context): ImageLoader {
+        val appContext = context.applicationContext
+        val thumbnails = lazy {
+            DiskCache.Builder()
+                .directory(appContext.cacheDir.resolve(THUMBNAIL_DIRECTORY))
+                .maxSizeBytes(THUMBNAIL_CACHE_BYTES)
+                .build()
+        }
+        return ImageLoader.Builder(appContext)
+            .memoryCache {
+                MemoryCache.Builder(appContext)
+                    .maxSizePercent(MEMORY_CACHE_PERCENT)
+                    .build()
+            }
+            .components {
+                add(MomentThumbnail.Key())
+                add(ThumbnailFetcher.Factory(thumbnails))
+            }
+            .build()
+    }
+}
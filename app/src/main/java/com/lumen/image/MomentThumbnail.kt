@@ -0,0 +1,24 @@
+package com.lumen.image
+
+import coil.key.Keyer
+import coil.request.Options
+import com.lumen.model.Moment
+
+/**
+ * Image request data for a moment's grid thumbnail. Loaded through [LumenImageLoader], it decodes
+ * a pre-scaled copy sized to the request rather than the original photo.
+ */
+data class MomentThumbnail(
+    val momentId: String,
+    val imageUrl: String
+) {
+    constructor(moment: Moment) : this(moment.id, moment.imageUrl)
+
+    /**
+     * Memory cache key, shared by every size; on a hit Coil only reuses the cached bitmap when it is
+     * large enough for the request, and decodes again otherwise.
+     */
+    internal class Key : Keyer<MomentThumbnail> {
+        override fun key(data: MomentThumbnail, options: Options): String = "thumbnail:${data.momentId}"
+    }
+}
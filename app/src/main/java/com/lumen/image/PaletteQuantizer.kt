@@ -0,0 +1,199 @@
+package com.lumen.image
+
+import kotlin.math.abs
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Median-cut palette quantization over ARGB pixels, with no Android dependencies so it can be
+ * tested and benchmarked on the JVM.
+ *
+ * Pixels are first bucketed into a 15-bit (5 bits per channel) histogram, so the cost of the cut
+ * itself depends on the number of distinct buckets rather than on the image size. The histogram is
+ * then split box by box, always the most populous box along its widest channel at the population
+ * median, until there are `maxColors` boxes; each box becomes a [Swatch] of its average color.
+ */
+object PaletteQuantizer {
+    const val DEFAULT_MAX_COLORS = 16
+
+    private const val BITS = 5
+    private const val MASK = (1 shl BITS) - 1
+    private const val MIN_ALPHA = 0x80
+    private const val MIN_LIGHTNESS = 0.08f
+    private const val MAX_LIGHTNESS = 0.92f
+
+    /** One color of the quantized palette, opaque, and how many pixels it stands for. */
+    data class Swatch(val rgb: Int, val population: Int)
+
+    /** The palette of [pixels], most populous first. Mostly transparent pixels are ignored. */
+    fun quantize(pixels: IntArray, maxColors: Int = DEFAULT_MAX_COLORS): List<Swatch> {
+        require(maxColors > 0) { "maxColors must be positive: $maxColors" }
+        val histogram = IntArray(1 shl (3 * BITS))
+        for (pixel in pixels) {
+            if (pixel ushr 24 >= MIN_ALPHA) {
+                histogram[bucketOf(pixel)]++
+            }
+        }
+        val colors = histogram.indices.filter { histogram[it] > 0 }.toIntArray()
+        if (colors.isEmpty()) {
+            return emptyList()
+        }
+
+        val boxes = mutableListOf(Box(0, colors.size - 1))
+        boxes[0].fit(colors, histogram)
+        while (boxes.size < maxColors) {
+            val box = boxes.filter { it.canSplit }.maxByOrNull { it.population } ?: break
+            boxes += box.split(colors, histogram)
+        }
+        return boxes.map { it.swatch(colors, histogram) }.sortedByDescending { it.population }
+    }
+
+    /**
+     * The color to theme a moment with: the swatch with the best mix of population, saturation and
+     * mid lightness, so a small vivid subject wins over a large grey background. Near-black and
+     * near-white swatches only win when nothing else is left. Returns [fallback] for an image
+     * without opaque pixels.
+     */
+    fun accentColor(pixels: IntArray, fallback: Int, maxColors: Int = DEFAULT_MAX_COLORS): Int {
+        val swatches = quantize(pixels, maxColors)
+        val usable = swatches
+            .filter { lightness(it.rgb) in MIN_LIGHTNESS..MAX_LIGHTNESS }
+            .ifEmpty { swatches }
+        val best = usable.maxByOrNull { swatch ->
+            val lightness = lightness(swatch.rgb)
+            swatch.population * (0.25f + saturation(swatch.rgb)) * (1f - abs(lightness - 0.5f))
+        } ?: return fallback
+        return best.rgb
+    }
+
+    private class Box(var lower: Int, var upper: Int) {
+        var population = 0
+        var minRed = 0
+        var maxRed = 0
+        var minGreen = 0
+        var maxGreen = 0
+        var minBlue = 0
+        var maxBlue = 0
+
+        val canSplit: Boolean
+            get() = upper > lower
+
+        fun fit(colors: IntArray, histogram: IntArray) {
+            population = 0
+            minRed = MASK
+            minGreen = MASK
+            minBlue = MASK
+            maxRed = 0
+            maxGreen = 0
+            maxBlue = 0
+            for (index in lower..upper) {
+                val color = colors[index]
+                population += histogram[color]
+                minRed = min(minRed, red(color))
+                maxRed = max(maxRed, red(color))
+                minGreen = min(minGreen, green(color))
+                maxGreen = max(maxGreen, green(color))
+                minBlue = min(minBlue, blue(color))
+                maxBlue = max(maxBlue, blue(color))
+            }
+        }
+
+        /** Splits off and returns the upper half along the widest channel; this box keeps the rest. */
+        fun split(colors: IntArray, histogram: IntArray): Box {
+            val red = maxRed - minRed
+            val green = maxGreen - minGreen
+            val blue = maxBlue - minBlue
+            val channel = when {
+                red >= green && red >= blue -> RED
+                green >= blue -> GREEN
+                else -> BLUE
+            }
+            // Sorting with the chosen channel moved into the top bits orders the range by it.
+            for (index in lower..upper) colors[index] = moveToTop(colors[index], channel)
+            colors.sort(lower, upper + 1)
+            for (index in lower..upper) colors[index] = moveFromTop(colors[index], channel)
+
+            var cumulative = 0
+            var splitAt = lower
+            for (index in lower until upper) {
+                cumulative += histogram[colors[index]]
+                splitAt = index
+                if (cumulative * 2 >= population) {
+                    break
+                }
+            }
+            val upperBox = Box(splitAt + 1, upper)
+            upper = splitAt
+            fit(colors, histogram)
+            upperBox.fit(colors, histogram)
+            return upperBox
+        }
+
+        fun swatch(colors: IntArray, histogram: IntArray): Swatch {
+            var red = 0L
+            var green = 0L
+            var blue = 0L
+            for (index in lower..upper) {
+                val color = colors[index]
+                val count = histogram[color]
+                red += expand(red(color)).toLong() * count
+                green += expand(green(color)).toLong() * count
+                blue += expand(blue(color)).toLong() * count
+            }
+            val rgb = 0xFF000000.toInt() or
+                ((red / population).toInt() shl 16) or
+                ((green / population).toInt() shl 8) or
+                (blue / population).toInt()
+            return Swatch(rgb, population)
+        }
+    }
+
+    private const val RED = 0
+    private const val GREEN = 1
+    private const val BLUE = 2
+
+    private fun bucketOf(pixel: Int): Int {
+        val red = pixel shr 19 and MASK
+        val green = pixel shr 11 and MASK
+        val blue = pixel shr 3 and MASK
+        return (red shl (2 * BITS)) or (green shl BITS) or blue
+    }
+
+    private fun red(bucket: Int) = bucket shr (2 * BITS) and MASK
+
+    private fun green(bucket: Int) = bucket shr BITS and MASK
+
+    private fun blue(bucket: Int) = bucket and MASK
+
+    /** A 5-bit channel back to 8 bits, spreading it over the full range. */
+    private fun expand(channel: Int) = (channel shl 3) or (channel shr 2)
+
+    private fun moveToTop(bucket: Int, channel: Int): Int = when (channel) {
+        GREEN -> (green(bucket) shl (2 * BITS)) or (red(bucket) shl BITS) or blue(bucket)
+        BLUE -> (blue(bucket) shl (2 * BITS)) or (green(bucket) shl BITS) or red(bucket)
+        else -> bucket
+    }
+
+    private fun moveFromTop(key: Int, channel: Int): Int = when (channel) {
+        GREEN -> (green(key) shl (2 * BITS)) or (red(key) shl BITS) or blue(key)
+        BLUE -> (blue(key) shl (2 * BITS)) or (green(key) shl BITS) or red(key)
+        else -> key
+    }
+
+    private fun lightness(rgb: Int): Float {
+        val max = max(rgb shr 16 and 0xFF, max(rgb shr 8 and 0xFF, rgb and 0xFF))
+        val min = min(rgb shr 16 and 0xFF, min(rgb shr 8 and 0xFF, rgb and 0xFF))
+        return (max + min) / 510f
+    }
+
+    private fun saturation(rgb: Int): Float {
+        val max = max(rgb shr 16 and 0xFF, max(rgb shr 8 and 0xFF, rgb and 0xFF)) / 255f
+        val min = min(rgb shr 16 and 0xFF, min(rgb shr 8 and 0xFF, rgb and 0xFF)) / 255f
+        val delta = max - min
+        if (delta == 0f) {
+            return 0f
+        }
+        val lightness = (max + min) / 2f
+        return delta / (1f - abs(2f * lightness - 1f))
+    }
+}
@@ -0,0 +1,98 @@
+package com.lumen.image
+
+import android.graphics.Bitmap
+import android.graphics.drawable.BitmapDrawable
+import coil.ImageLoader
+import coil.decode.DataSource
+import coil.decode.ImageSource
+import coil.disk.DiskCache
+import coil.fetch.DrawableResult
+import coil.fetch.FetchResult
+import coil.fetch.Fetcher
+import coil.fetch.SourceResult
+import coil.request.CachePolicy
+import coil.request.ErrorResult
+import coil.request.ImageRequest
+import coil.request.Options
+import coil.request.SuccessResult
+import coil.size.Size
+import coil.size.pxOrElse
+
+/**
+ * Serves [MomentThumbnail]s from a disk cache of pre-scaled JPEGs keyed by moment id and size.
+ *
+ * On a miss, the original is decoded once, subsampled to the thumbnail size by Coil's decoder,
+ * and the result is written to the cache before it is returned. Sizes are rounded up to a multiple
+ * of [SIZE_STEP_PX], so the slightly different cell widths of one grid share a thumbnail.
+ */
+internal class ThumbnailFetcher(
+    private val data: MomentThumbnail,
+    private val options: Options,
+    private val imageLoader: ImageLoader,
+    private val thumbnails: DiskCache
+) : Fetcher {
+
+    override suspend fun fetch(): FetchResult {
+        val edge = thumbnailEdge(options.size)
+        val key = "${data.momentId}@$edge"
+        thumbnails.openSnapshot(key)?.let { snapshot ->
+            return SourceResult(
+                source = ImageSource(snapshot.data, thumbnails.fileSystem, key, snapshot),
+                mimeType = MIME_TYPE,
+                dataSource = DataSource.DISK
+            )
+        }
+
+        val original = imageLoader.execute(
+            ImageRequest.Builder(options.context)
+                .data(data.imageUrl)
+                .size(edge)
+                .scale(options.scale)
+                .allowHardware(false)
+                .memoryCachePolicy(CachePolicy.DISABLED)
+                .build()
+        )
+        if (original is ErrorResult) {
+            throw original.throwable
+        }
+        val bitmap = ((original as SuccessResult).drawable as? BitmapDrawable)?.bitmap
+            ?: return DrawableResult(original.drawable, isSampled = true, dataSource = original.dataSource)
+        store(key, bitmap)
+        return DrawableResult(
+            drawable = BitmapDrawable(options.context.resources, bitmap),
+            isSampled = true,
+            dataSource = original.dataSource
+        )
+    }
+
+    private fun store(key: String, bitmap: Bitmap) {
+        val editor = thumbnails.openEditor(key) ?: return
+        try {
+            thumbnails.fileSystem.write(editor.data) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream())
+            }
+            editor.commit()
+        } catch (exception: Exception) {
+            editor.abort()
+        }
+    }
+
+    class Factory(
+        private val thumbnails: Lazy<DiskCache>
+    ) : Fetcher.Factory<MomentThumbnail> {
+        override fun create(data: MomentThumbnail, options: Options, imageLoader: ImageLoader): Fetcher =
+            ThumbnailFetcher(data, options, imageLoader, thumbnails.value)
+    }
+
+    companion object {
+        const val SIZE_STEP_PX = 64
+        private const val JPEG_QUALITY = 85
+        private const val MIME_TYPE = "image/jpeg"
+
+        /** The longer requested side rounded up to [SIZE_STEP_PX]; a cell-less request gets one step. */
+        fun thumbnailEdge(size: Size): Int {
+            val longest = maxOf(size.width.pxOrElse { 0 }, size.height.pxOrElse { 0 }).coerceAtLeast(1)
+            return (longest + SIZE_STEP_PX - 1) / SIZE_STEP_PX * SIZE_STEP_PX
+        }
+    }
+}
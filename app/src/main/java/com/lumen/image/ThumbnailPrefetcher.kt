@@ -0,0 +1,188 @@
+package com.lumen.image
+
+import android.content.Context
+import coil.ImageLoader
+import coil.decode.DataSource
+import coil.imageLoader
+import coil.request.ImageRequest
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlin.math.abs
+
+/**
+ * Loads thumbnails for the rows a grid is about to scroll into, so fast flings land on decoded
+ * images instead of blank cells.
+ *
+ * Each [update] looks ahead in the scroll direction by [baseRows] plus however many rows the
+ * current velocity covers in [lookaheadSeconds], up to [maxRows]. Loads for moments that fall out
+ * of that window before they are shown are cancelled. [stats] counts how many prefetches were
+ * shown in time and how many decodes were wasted on moments that were never shown.
+ *
+ * Not thread-safe: call [update] on the main thread, where Coil also delivers results.
+ */
+class ThumbnailPrefetcher(
+    private val loader: Loader,
+    private val baseRows: Int = DEFAULT_BASE_ROWS,
+    private val maxRows: Int = DEFAULT_MAX_ROWS,
+    private val lookaheadSeconds: Float = DEFAULT_LOOKAHEAD_SECONDS
+) {
+
+    /** Starts loading [thumbnail] at [edgePx]; [onLoaded] says whether it had to be decoded. */
+    fun interface Loader {
+        fun load(thumbnail: MomentThumbnail, edgePx: Int, onLoaded: (decoded: Boolean) -> Unit): Cancellable
+    }
+
+    fun interface Cancellable {
+        fun cancel()
+    }
+
+    data class Stats(
+        val enqueued: Int = 0,
+        val completed: Int = 0,
+        val decoded: Int = 0,
+        /** Prefetched moments that were then shown. */
+        val hits: Int = 0,
+        /** Decodes of moments that left the window without being shown. */
+        val wastedDecodes: Int = 0,
+        val cancelled: Int = 0
+    ) {
+        val hitRate: Float
+            get() = if (enqueued == 0) 0f else hits.toFloat() / enqueued
+    }
+
+    private class Prefetch {
+        var cancellable: Cancellable? = null
+        var completed = false
+        var decoded = false
+    }
+
+    private val prefetches = HashMap<String, Prefetch>()
+    private val _stats = MutableStateFlow(Stats())
+    val stats: StateFlow<Stats> = _stats.asStateFlow()
+
+    /**
+     * Re-targets prefetching after a scroll. [visible] are the item indices on screen, laid out in
+     * [columns] columns of cells [edgePx] wide; [rowsPerSecond] is positive towards the end of the
+     * list. [itemAt] must not make the list load anything; it returns `null` for items not loaded.
+     */
+    fun update(
+        visible: IntRange,
+        columns: Int,
+        rowsPerSecond: Float,
+        edgePx: Int,
+        itemCount: Int,
+        itemAt: (Int) -> MomentThumbnail?
+    ) {
+        val rows = (baseRows + abs(rowsPerSecond) * lookaheadSeconds).toInt().coerceAtMost(maxRows)
+        val window = prefetchWindow(visible, columns, rows, forward = rowsPerSecond >= 0f, itemCount)
+        val shown = visible.mapNotNullTo(HashSet()) { itemAt(it)?.momentId }
+        val wanted = LinkedHashMap<String, MomentThumbnail>()
+        for (index in window) {
+            itemAt(index)?.let { wanted[it.momentId] = it }
+        }
+
+        val iterator = prefetches.entries.iterator()
+        while (iterator.hasNext()) {
+            val (momentId, prefetch) = iterator.next()
+            when {
+                momentId in shown -> {
+                    // Still-running loads are left to finish, since the cell is waiting on them.
+                    _stats.update { it.copy(hits = it.hits + 1) }
+                    iterator.remove()
+                }
+                momentId !in wanted -> {
+                    if (!prefetch.completed) {
+                        prefetch.cancellable?.cancel()
+                        _stats.update { it.copy(cancelled = it.cancelled + 1) }
+                    } else if (prefetch.decoded) {
+                        _stats.update { it.copy(wastedDecodes = it.wastedDecodes + 1) }
+                    }
+                    iterator.remove()
+                }
+            }
+        }
+
+        for ((momentId, thumbnail) in wanted) {
+            if (momentId in prefetches || momentId in shown) {
+                continue
+            }
+            val prefetch = Prefetch()
+            prefetches[momentId] = prefetch
+            _stats.update { it.copy(enqueued = it.enqueued + 1) }
+            prefetch.cancellable = loader.load(thumbnail, edgePx) { decoded ->
+                if (!prefetch.completed) {
+                    prefetch.completed = true
+                    prefetch.decoded = decoded
+                    _stats.update {
+                        it.copy(completed = it.completed + 1, decoded = it.decoded + if (decoded) 1 else 0)
+                    }
+                }
+            }
+        }
+    }
+
+    /** Cancels every outstanding prefetch, e.g. when the grid leaves the screen. */
+    fun clear() {
+        for (prefetch in prefetches.values) {
+            if (!prefetch.completed) {
+                prefetch.cancellable?.cancel()
+                _stats.update { it.copy(cancelled = it.cancelled + 1) }
+            }
+        }
+        prefetches.clear()
+    }
+
+    companion object {
+        const val DEFAULT_BASE_ROWS = 2
+        const val DEFAULT_MAX_ROWS = 8
+        const val DEFAULT_LOOKAHEAD_SECONDS = 0.5f
+        private const val PREFETCH_PARALLELISM = 2
+
+        /** The [rows] rows of items just past [visible] in the scroll direction. */
+        fun prefetchWindow(
+            visible: IntRange,
+            columns: Int,
+            rows: Int,
+            forward: Boolean,
+            itemCount: Int
+        ): IntRange {
+            val span = rows * columns
+            return if (forward) {
+                visible.last + 1..minOf(itemCount - 1, visible.last + span)
+            } else {
+                maxOf(0, visible.first - span) until visible.first
+            }
+        }
+
+        /**
+         * A prefetcher loading through [imageLoader] on a dispatcher of its own with
+         * [PREFETCH_PARALLELISM] threads, so prefetches never hold up the loads of visible cells.
+         */
+        @OptIn(ExperimentalCoroutinesApi::class)
+        fun create(context: Context, imageLoader: ImageLoader = context.imageLoader): ThumbnailPrefetcher {
+            val lowPriority = Dispatchers.IO.limitedParallelism(PREFETCH_PARALLELISM)
+            return ThumbnailPrefetcher(
+                loader = { thumbnail, edgePx, onLoaded ->
+                    val request = ImageRequest.Builder(context)
+                        .data(thumbnail)
+                        .size(edgePx)
+                        .fetcherDispatcher(lowPriority)
+                        .decoderDispatcher(lowPriority)
+                        .listener(
+                            onSuccess = { _, result ->
+                                onLoaded(result.dataSource != DataSource.MEMORY_CACHE)
+                            },
+                            onError = { _, _ -> onLoaded(false) }
+                        )
+                        .build()
+                    val disposable = imageLoader.enqueue(request)
+                    Cancellable { disposable.dispose() }
+                }
+            )
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.lumen.model
 
+import kotlinx.serialization.Serializable
+
 /**
  * Represents a captured memory moment in the Lumen journal.
  */
+@Serializable
 data class Moment(
     val id: String,
     val imageUrl: String,
@@ -0,0 +1,24 @@
+package com.lumen.model
+
+import java.time.LocalDate
+
+/** The length of the periods mood statistics are counted over. Weeks start on Monday. */
+enum class StatsPeriod {
+    DAY,
+    WEEK,
+    MONTH
+}
+
+/**
+ * How many moments of [tone] were captured in the [period] starting on [startEpochDay], a
+ * [LocalDate.toEpochDay] in the time zone the moments were added in.
+ */
+data class ToneCount(
+    val period: StatsPeriod,
+    val startEpochDay: Long,
+    val tone: String,
+    val count: Int
+) {
+    val start: LocalDate
+        get() = LocalDate.ofEpochDay(startEpochDay)
+}
@@ -3,11 +3,13 @@ package com.lumen.ui
 import androidx.compose.foundation.layout.Arrangement
 import androidx.compose.foundation.layout.Column
 import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
 import androidx.compose.foundation.layout.padding
 import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.items
 import androidx.compose.material3.Button
 import androidx.compose.material3.MaterialTheme
+import androidx.compose.material3.OutlinedTextField
 import androidx.compose.material3.Surface
 import androidx.compose.material3.Text
 import androidx.compose.runtime.Composable
@@ -17,11 +19,15 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.unit.dp
 import com.lumen.R
+import com.lumen.model.Moment
 import com.lumen.viewmodel.ExploreViewModel
+import com.lumen.viewmodel.SearchViewModel
 
 @Composable
-fun ExploreScreen(viewModel: ExploreViewModel) {
+fun ExploreScreen(viewModel: ExploreViewModel, searchViewModel: SearchViewModel) {
     val prompts by viewModel.prompts.collectAsState()
+    val query by searchViewModel.query.collectAsState()
+    val results by searchViewModel.results.collectAsState()
 
     Column(
         modifier = Modifier
@@ -29,26 +35,56 @@ fun ExploreScreen(viewModel: ExploreViewModel) {
             .padding(horizontal = 24.dp, vertical = 32.dp),
         verticalArrangement = Arrangement.spacedBy(16.dp)
     ) {
-        Text(
-            text = stringResource(id = R.string.explore_prompt_header),
-            style = MaterialTheme.typography.titleLarge
+        OutlinedTextField(
+            value = query,
+            onValueChange = searchViewModel::onQueryChange,
+            label = { Text(stringResource(id = R.string.search_label)) },
+            singleLine = true,
+            modifier = Modifier.fillMaxWidth()
         )
-        LazyColumn(
-            modifier = Modifier.weight(1f, fill = true),
-            verticalArrangement = Arrangement.spacedBy(12.dp)
-        ) {
-            items(prompts) { prompt ->
-                Surface(shape = MaterialTheme.shapes.medium) {
-                    Text(
-                        text = prompt,
-                        style = MaterialTheme.typography.bodyLarge,
-                        modifier = Modifier.padding(16.dp)
-                    )
+        if (query.isNotBlank()) {
+            SearchResults(results = results, modifier = Modifier.weight(1f, fill = true))
+        } else {
+            Text(
+                text = stringResource(id = R.string.explore_prompt_header),
+                style = MaterialTheme.typography.titleLarge
+            )
+            LazyColumn(
+                modifier = Modifier.weight(1f, fill = true),
+                verticalArrangement = Arrangement.spacedBy(12.dp)
+            ) {
+                items(prompts) { prompt ->
+                    Surface(shape = MaterialTheme.shapes.medium) {
+                        Text(
+                            text = prompt,
+                            style = MaterialTheme.typography.bodyLarge,
+                            modifier = Modifier.padding(16.dp)
+                        )
+                    }
                 }
             }
+            Button(onClick = viewModel::shufflePrompts) {
+                Text(text = stringResource(id = R.string.shuffle_action))
+            }
         }
-        Button(onClick = viewModel::shufflePrompts) {
-            Text(text = stringResource(id = R.string.shuffle_action))
+    }
+}
+
+@Composable
+private fun SearchResults(results: List<Moment>, modifier: Modifier = Modifier) {
+    LazyColumn(
+        modifier = modifier,
+        verticalArrangement = Arrangement.spacedBy(12.dp)
+    ) {
+        items(results, key = Moment::id) { moment ->
+            Surface(shape = MaterialTheme.shapes.medium) {
+                Column(modifier = Modifier.padding(16.dp)) {
+                    Text(text = moment.tone, style = MaterialTheme.typography.titleMedium)
+                    moment.caption?.let {
+                        Text(text = it, style = MaterialTheme.typography.bodyMedium)
+                    }
+                }
+            }
         }
     }
 }
@@ -1,7 +1,8 @@
 package com.lumen.ui
 
-import androidx.compose.foundation.Image
+import androidx.compose.foundation.background
 import androidx.compose.foundation.layout.Arrangement
+import androidx.compose.foundation.layout.Box
 import androidx.compose.foundation.layout.Column
 import androidx.compose.foundation.layout.PaddingValues
 import androidx.compose.foundation.layout.aspectRatio
@@ -10,7 +11,7 @@ import androidx.compose.foundation.layout.fillMaxWidth
 import androidx.compose.foundation.layout.padding
 import androidx.compose.foundation.lazy.grid.GridCells
 import androidx.compose.foundation.lazy.grid.LazyVerticalGrid
-import androidx.compose.foundation.lazy.grid.items
+import androidx.compose.foundation.lazy.grid.rememberLazyGridState
 import androidx.compose.material3.CircularProgressIndicator
 import androidx.compose.material3.MaterialTheme
 import androidx.compose.material3.Text
@@ -25,7 +26,12 @@ import androidx.compose.ui.layout.ContentScale
 import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.text.style.TextOverflow
 import androidx.compose.ui.unit.dp
-import coil.compose.rememberAsyncImagePainter
+import androidx.paging.LoadState
+import androidx.paging.compose.collectAsLazyPagingItems
+import androidx.paging.compose.itemKey
+import coil.compose.AsyncImage
+import com.lumen.image.MomentThumbnail
+import com.lumen.image.ThumbnailPrefetcher
 import com.lumen.model.Moment
 import com.lumen.viewmodel.FeedViewModel
 import java.text.DateFormat
@@ -34,8 +40,9 @@ import java.util.Date
 @Composable
 fun FeedScreen(viewModel: FeedViewModel) {
     val state by viewModel.uiState.collectAsState()
+    val moments = viewModel.moments.collectAsLazyPagingItems()
 
-    if (state.moments.isEmpty() && state.isRefreshing) {
+    if (moments.itemCount == 0 && (state.isRefreshing || moments.loadState.refresh is LoadState.Loading)) {
         Column(
             modifier = Modifier.fillMaxSize(),
             horizontalAlignment = Alignment.CenterHorizontally,
@@ -44,24 +51,47 @@ fun FeedScreen(viewModel: FeedViewModel) {
             CircularProgressIndicator()
         }
     } else {
+        val gridState = rememberLazyGridState()
+        val context = LocalContext.current
+        val prefetcher = remember { ThumbnailPrefetcher.create(context) }
+        ThumbnailPrefetchEffect(state = gridState, moments = moments, prefetcher = prefetcher)
         LazyVerticalGrid(
             columns = GridCells.Adaptive(minSize = 160.dp),
+            state = gridState,
             contentPadding = PaddingValues(16.dp),
             verticalArrangement = Arrangement.spacedBy(12.dp),
             horizontalArrangement = Arrangement.spacedBy(12.dp)
         ) {
-            items(state.moments, key = { it.id }) { moment ->
-                MomentCard(moment = moment)
+            items(count = moments.itemCount, key = moments.itemKey { it.id }) { index ->
+                val moment = moments[index]
+                if (moment != null) {
+                    MomentCard(moment = moment)
+                } else {
+                    MomentPlaceholder()
+                }
             }
         }
     }
 }
 
+/** Stands in for a moment whose page is not loaded, so the grid keeps its size and scroll position. */
+@Composable
+private fun MomentPlaceholder() {
+    Box(
+        modifier = Modifier
+            .fillMaxWidth()
+            .aspectRatio(1f)
+            .clip(MaterialTheme.shapes.medium)
+            .background(MaterialTheme.colorScheme.surfaceVariant)
+    )
+}
+
 @Composable
 private fun MomentCard(moment: Moment) {
     Column {
-        Image(
-            painter = rememberAsyncImagePainter(model = moment.imageUrl),
+        // Sized by the cell's constraints, so only a cell-sized thumbnail is ever decoded.
+        AsyncImage(
+            model = MomentThumbnail(moment),
             contentDescription = moment.caption,
             modifier = Modifier
                 .fillMaxWidth()
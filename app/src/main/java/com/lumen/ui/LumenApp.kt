@@ -24,6 +24,7 @@ import androidx.navigation.compose.rememberNavController
 import com.lumen.viewmodel.AddMomentViewModel
 import com.lumen.viewmodel.ExploreViewModel
 import com.lumen.viewmodel.FeedViewModel
+import com.lumen.viewmodel.SearchViewModel
 import com.lumen.R
 
 private enum class LumenDestination(
@@ -52,7 +53,8 @@ private enum class LumenDestination(
 fun LumenApp(
     feedViewModel: FeedViewModel,
     addMomentViewModel: AddMomentViewModel,
-    exploreViewModel: ExploreViewModel
+    exploreViewModel: ExploreViewModel,
+    searchViewModel: SearchViewModel
 ) {
     val navController = rememberNavController()
     val backStackEntry by navController.currentBackStackEntryAsState()
@@ -92,7 +94,7 @@ fun LumenApp(
                 AddMomentScreen(viewModel = addMomentViewModel)
             }
             composable(LumenDestination.Explore.route) {
-                ExploreScreen(viewModel = exploreViewModel)
+                ExploreScreen(viewModel = exploreViewModel, searchViewModel = searchViewModel)
             }
         }
     }
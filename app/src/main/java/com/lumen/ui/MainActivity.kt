@@ -10,18 +10,24 @@ import androidx.compose.ui.Modifier
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.ViewModelProvider
 import com.lumen.data.MomentRepository
+import com.lumen.data.RoomMomentRepository
+import com.lumen.image.AccentColorExtractor
 import com.lumen.theme.LumenTheme
 import com.lumen.viewmodel.AddMomentViewModel
 import com.lumen.viewmodel.ExploreViewModel
 import com.lumen.viewmodel.FeedViewModel
+import com.lumen.viewmodel.SearchViewModel
 
 class MainActivity : ComponentActivity() {
 
-    private val repository by lazy { MomentRepository() }
+    private val repository: MomentRepository by lazy { RoomMomentRepository(applicationContext) }
 
     private val feedViewModel: FeedViewModel by viewModels { repositoryFactory { FeedViewModel(repository) } }
-    private val addMomentViewModel: AddMomentViewModel by viewModels { repositoryFactory { AddMomentViewModel(repository) } }
+    private val addMomentViewModel: AddMomentViewModel by viewModels {
+        repositoryFactory { AddMomentViewModel(repository, AccentColorExtractor.create(applicationContext)) }
+    }
     private val exploreViewModel: ExploreViewModel by viewModels()
+    private val searchViewModel: SearchViewModel by viewModels { repositoryFactory { SearchViewModel(repository) } }
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -31,7 +37,8 @@ class MainActivity : ComponentActivity() {
                     LumenApp(
                         feedViewModel = feedViewModel,
                         addMomentViewModel = addMomentViewModel,
-                        exploreViewModel = exploreViewModel
+                        exploreViewModel = exploreViewModel,
+                        searchViewModel = searchViewModel
                     )
                 }
             }
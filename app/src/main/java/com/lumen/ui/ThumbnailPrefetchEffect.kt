@@ -0,0 +1,54 @@
+package com.lumen.ui
+
+import android.os.SystemClock
+import androidx.compose.foundation.lazy.grid.LazyGridState
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.DisposableEffect
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.snapshotFlow
+import androidx.paging.compose.LazyPagingItems
+import com.lumen.image.MomentThumbnail
+import com.lumen.image.ThumbnailPrefetcher
+import com.lumen.model.Moment
+
+/**
+ * Feeds [prefetcher] the visible range, column count, cell size and scroll velocity of [state]
+ * after every layout pass. Items are read with [LazyPagingItems.peek], so prefetching never makes
+ * Paging load a page.
+ */
+@Composable
+fun ThumbnailPrefetchEffect(
+    state: LazyGridState,
+    moments: LazyPagingItems<Moment>,
+    prefetcher: ThumbnailPrefetcher
+) {
+    DisposableEffect(prefetcher) {
+        onDispose { prefetcher.clear() }
+    }
+    LaunchedEffect(state, moments, prefetcher) {
+        var lastRow = Float.NaN
+        var lastUptimeMillis = 0L
+        snapshotFlow { state.layoutInfo.visibleItemsInfo }
+            .collect { items ->
+                val first = items.firstOrNull() ?: return@collect
+                val columns = items.maxOf { it.column } + 1
+                val scrolledIntoRow = state.firstVisibleItemScrollOffset.toFloat() / first.size.height.coerceAtLeast(1)
+                val row = first.row + scrolledIntoRow
+                val now = SystemClock.uptimeMillis()
+                val rowsPerSecond = if (lastRow.isNaN() || now == lastUptimeMillis) {
+                    0f
+                } else {
+                    (row - lastRow) * 1_000f / (now - lastUptimeMillis)
+                }
+                lastRow = row
+                lastUptimeMillis = now
+                prefetcher.update(
+                    visible = first.index..items.last().index,
+                    columns = columns,
+                    rowsPerSecond = rowsPerSecond,
+                    edgePx = first.size.width,
+                    itemCount = moments.itemCount
+                ) { index -> moments.peek(index)?.let(::MomentThumbnail) }
+            }
+    }
+}
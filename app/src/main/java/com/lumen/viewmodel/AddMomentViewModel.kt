@@ -2,10 +2,15 @@ package com.lumen.viewmodel
 
 import androidx.compose.runtime.mutableStateOf
 import androidx.lifecycle.ViewModel
+import androidx.lifecycle.viewModelScope
 import com.lumen.data.MomentRepository
+import com.lumen.image.AccentColorExtractor
+import com.lumen.image.AccentColorSource
+import kotlinx.coroutines.launch
 
 class AddMomentViewModel(
-    private val repository: MomentRepository
+    private val repository: MomentRepository,
+    private val accentColors: AccentColorSource = AccentColorSource { AccentColorExtractor.DEFAULT_ACCENT_COLOR }
 ) : ViewModel() {
 
     val selectedTone = mutableStateOf("Golden Hour")
@@ -13,12 +18,22 @@ class AddMomentViewModel(
     val imageUrl = mutableStateOf("https://images.unsplash.com/photo-1487412947147-5cebf100ffc2")
 
     fun saveMoment() {
-        repository.addMoment(
-            imageUrl = imageUrl.value,
-            tone = selectedTone.value,
-            caption = caption.value.takeIf { it.isNotBlank() },
-            accentColor = 0xFFC3A35BL
-        )
+        val url = imageUrl.value
+        val tone = selectedTone.value
+        val text = caption.value.takeIf { it.isNotBlank() }
+        viewModelScope.launch {
+            // Saved before the image is read, which can take as long as the network does.
+            val saved = repository.addMoment(
+                imageUrl = url,
+                tone = tone,
+                caption = text,
+                accentColor = AccentColorExtractor.DEFAULT_ACCENT_COLOR
+            )
+            val accentColor = accentColors.accentColorFor(url)
+            if (accentColor != saved.accentColor) {
+                repository.updateAccentColor(saved.id, accentColor)
+            }
+        }
         caption.value = ""
         selectedTone.value = "Golden Hour"
     }
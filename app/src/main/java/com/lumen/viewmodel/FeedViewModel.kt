@@ -2,32 +2,50 @@ package com.lumen.viewmodel
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
 import com.lumen.data.MomentRepository
 import com.lumen.model.Moment
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.StateFlow
-import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
 
 class FeedViewModel(
-    private val repository: MomentRepository
+    private val repository: MomentRepository,
+    pageSize: Int = DEFAULT_PAGE_SIZE
 ) : ViewModel() {
 
     private val refreshing = MutableStateFlow(false)
 
-    val uiState: StateFlow<FeedUiState> = combine(
-        repository.observeMoments(),
-        refreshing
-    ) { moments, isRefreshing ->
-        FeedUiState(moments = moments, isRefreshing = isRefreshing)
-    }.stateIn(
-        scope = viewModelScope,
-        started = SharingStarted.WhileSubscribed(5_000),
-        initialValue = FeedUiState()
-    )
+    /**
+     * The feed, newest first, paged by keyset. Placeholders keep the grid at its full size, while
+     * pages further than a page of prefetch beyond the viewport are dropped again.
+     */
+    val moments: Flow<PagingData<Moment>> = Pager(
+        config = PagingConfig(
+            pageSize = pageSize,
+            prefetchDistance = pageSize,
+            enablePlaceholders = true,
+            initialLoadSize = pageSize * 2,
+            maxSize = pageSize * 4
+        ),
+        pagingSourceFactory = repository::pagingSource
+    ).flow.cachedIn(viewModelScope)
+
+    val uiState: StateFlow<FeedUiState> = refreshing
+        .map { isRefreshing -> FeedUiState(isRefreshing = isRefreshing) }
+        .stateIn(
+            scope = viewModelScope,
+            started = SharingStarted.WhileSubscribed(5_000),
+            initialValue = FeedUiState()
+        )
 
     fun refresh() {
         viewModelScope.launch {
@@ -36,9 +54,12 @@ class FeedViewModel(
             refreshing.emit(false)
         }
     }
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 30
+    }
 }
 
 data class FeedUiState(
-    val moments: List<Moment> = emptyList(),
     val isRefreshing: Boolean = false
 )
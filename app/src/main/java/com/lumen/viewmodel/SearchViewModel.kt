@@ -0,0 +1,56 @@
+package com.lumen.viewmodel
+
+import androidx.lifecycle.ViewModel
+import androidx.lifecycle.viewModelScope
+import com.lumen.data.MomentRepository
+import com.lumen.model.Moment
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.debounce
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.stateIn
+
+class SearchViewModel(
+    private val repository: MomentRepository,
+    private val debounceMillis: Long = DEFAULT_DEBOUNCE_MILLIS,
+    private val limit: Int = DEFAULT_LIMIT
+) : ViewModel() {
+
+    private val _query = MutableStateFlow("")
+    val query: StateFlow<String> = _query.asStateFlow()
+
+    /**
+     * Results for [query] as it is typed: the search only runs once typing pauses for
+     * [debounceMillis], and a newer query cancels the one still running. Clearing the field empties
+     * the results right away.
+     */
+    @OptIn(FlowPreview::class, ExperimentalCoroutinesApi::class)
+    val results: StateFlow<List<Moment>> = _query
+        .debounce { query -> if (query.isBlank()) 0L else debounceMillis }
+        .map { it.trim() }
+        .distinctUntilChanged()
+        .flatMapLatest { query ->
+            if (query.isEmpty()) flowOf(emptyList()) else repository.searchMoments(query, limit)
+        }
+        .stateIn(
+            scope = viewModelScope,
+            started = SharingStarted.WhileSubscribed(5_000),
+            initialValue = emptyList()
+        )
+
+    fun onQueryChange(query: String) {
+        _query.value = query
+    }
+
+    companion object {
+        const val DEFAULT_DEBOUNCE_MILLIS = 250L
+        const val DEFAULT_LIMIT = 50
+    }
+}
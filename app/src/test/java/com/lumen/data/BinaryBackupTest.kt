@@ -0,0 +1,164 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.SeekableByteChannel
+import java.nio.file.StandardOpenOption
+import java.util.UUID
+
+class BinaryBackupTest {
+
+    @Test
+    fun `blocks round-trip every column`() {
+        val moments = listOf(
+            moment(
+                UUID.randomUUID().toString(),
+                "https://images.example.com/a/1.jpg",
+                "Soft Dawn",
+                null,
+                3_000,
+                0xFFC3A35BL
+            ),
+            moment("not-a-uuid", "content://media/external/images/7", "Soft Dawn", "Caf\u00e9 \u2615", 3_000, 0L),
+            moment(UUID.randomUUID().toString().uppercase(), "no-slash", "Golden Hour", "", 1_000, 0xFFFFFFFFL),
+            moment("", "https://images.example.com/a/2.jpg", "Soft Dawn", "x", -5_000, 0x00ABCDEFL)
+        )
+
+        val decoded = BinaryBackup.decodeBlock(ByteBuffer.wrap(BinaryBackup.encodeBlock(moments)), moments.size)
+
+        assertEquals(moments, decoded)
+    }
+
+    @Test
+    fun `accent colors wider than 32 bits are rejected`() {
+        try {
+            BinaryBackup.encodeBlock(listOf(moment("a", "u", "t", null, 0, 0x1_0000_0000L)))
+            fail("expected the accent color to be rejected")
+        } catch (expected: IllegalArgumentException) {
+            assertTrue(expected.message!!.contains("32 bits"))
+        }
+    }
+
+    @Test
+    fun `export and restore round-trip the whole journal`() = withBackup(generated(10_000)) { file, source ->
+        val target = InMemoryMomentRepository(seed = emptyList())
+
+        val restored = FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            BinaryBackup(blockSize = 1_000).restore(channel, target)
+        }
+
+        assertEquals(10_000, restored)
+        assertEquals(source.momentsAfter(null, Int.MAX_VALUE), target.momentsAfter(null, Int.MAX_VALUE))
+    }
+
+    @Test
+    fun `partial restore only reads the blocks it needs`() = withBackup(generated(10_000)) { file, _ ->
+        val target = InMemoryMomentRepository(seed = emptyList())
+        // Moment i was created i minutes before the newest one, so this keeps moments 0 until 2500.
+        val since = START_MILLIS - 2_499 * MINUTE
+
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            val backup = BinaryBackup(blockSize = 1_000)
+            val blocks = backup.blocks(channel)
+            val counting = ReadCountingChannel(channel)
+            val restored = backup.restore(counting, target, sinceMillis = since)
+
+            assertEquals(10, blocks.size)
+            assertEquals(START_MILLIS, blocks.first().newestCreatedAtMillis)
+            assertEquals(2_500, restored)
+            // Three of the ten blocks, plus the header, index and trailer.
+            val wanted = blocks.take(3).sumOf { it.length.toLong() + Int.SIZE_BYTES }
+            assertTrue(counting.bytesRead < wanted + (file.length() - blocks.sumOf { it.length.toLong() }))
+        }
+        val restored = target.momentsAfter(null, Int.MAX_VALUE)
+        assertEquals((0 until 2_500).map { "moment-%06d".format(it) }, restored.map { it.id })
+    }
+
+    @Test
+    fun `binary backups are much smaller than json`() = withBackup(generated(10_000)) { file, source ->
+        val json = ByteArrayOutputStream()
+        JournalJson().export(source, json)
+
+        assertTrue("binary ${file.length()} vs json ${json.size()}", file.length() * 5 < json.size())
+    }
+
+    @Test
+    fun `unknown versions are rejected`() = withBackup(generated(10)) { file, _ ->
+        val bytes = file.readBytes()
+        bytes[4] = (BinaryBackup.FORMAT_VERSION + 1).toByte()
+        file.writeBytes(bytes)
+
+        try {
+            FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+                BinaryBackup().restore(channel, InMemoryMomentRepository(seed = emptyList()))
+            }
+            fail("expected the version to be rejected")
+        } catch (expected: IOException) {
+            assertTrue(expected.message!!.contains("version"))
+        }
+    }
+
+    private fun withBackup(
+        source: MomentRepository,
+        block: suspend (File, MomentRepository) -> Unit
+    ) = runBlocking {
+        val file = File.createTempFile("journal", ".lumb")
+        try {
+            file.outputStream().use { BinaryBackup(blockSize = 1_000).export(source, it) }
+            block(file, source)
+        } finally {
+            file.delete()
+        }
+    }
+
+    /** A journal of [size] moments as a camera roll import would produce them, newest first. */
+    private fun generated(size: Int): MomentRepository = runBlocking {
+        InMemoryMomentRepository(seed = emptyList()).also { repository ->
+            repository.addMoments(
+                (size - 1 downTo 0).map { index ->
+                    moment(
+                        id = "moment-%06d".format(index),
+                        imageUrl = "content://media/external/images/media/${100_000 + index}",
+                        tone = TONES[index % TONES.size],
+                        caption = if (index % 4 == 0) null else "Walked until the noise softened.",
+                        createdAtMillis = START_MILLIS - index * MINUTE,
+                        accentColor = 0xFF000000L or (index * 2_654_435_761L and 0xFFFFFFL)
+                    )
+                }
+            )
+        }
+    }
+
+    /** Counts the bytes restores actually read. */
+    private class ReadCountingChannel(
+        private val delegate: SeekableByteChannel
+    ) : SeekableByteChannel by delegate {
+        var bytesRead = 0L
+
+        override fun read(dst: ByteBuffer): Int = delegate.read(dst).also { if (it > 0) bytesRead += it }
+    }
+
+    private fun moment(
+        id: String,
+        imageUrl: String,
+        tone: String,
+        caption: String?,
+        createdAtMillis: Long,
+        accentColor: Long
+    ) = Moment(id, imageUrl, tone, caption, createdAtMillis, accentColor)
+
+    private companion object {
+        private const val START_MILLIS = 1_700_000_000_000L
+        private const val MINUTE = 60_000L
+        private val TONES = listOf("Soft Dawn", "Forest Quiet", "Golden Hour", "Neon Noir")
+    }
+}
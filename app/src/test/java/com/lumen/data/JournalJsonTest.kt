@@ -0,0 +1,146 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+
+class JournalJsonTest {
+
+    @Test
+    fun `export and import round-trip every field`() = runBlocking {
+        val source = MomentRepository()
+        source.addMoment("https://example.com/a.jpg", "Soft \"Dawn\"", null, 0xFFC3A35BL)
+        val output = ByteArrayOutputStream()
+
+        val exported = JournalJson(pageSize = 2).export(source, output)
+        val target = RecordingRepository()
+        val imported = JournalJson(pageSize = 2).import(ByteArrayInputStream(output.toByteArray()), target)
+
+        val expected = source.momentsAfter(null, Int.MAX_VALUE)
+        assertEquals(4, exported)
+        assertEquals(4, imported)
+        assertEquals(expected, target.moments)
+        assertEquals(listOf(2, 2), target.batchSizes)
+    }
+
+    @Test
+    fun `importing the same export twice adds its moments once`() = runBlocking {
+        val source = MomentRepository()
+        source.addMoment("https://example.com/a.jpg", "Soft Dawn", "Again", 0xFFC3A35BL)
+        val output = ByteArrayOutputStream()
+        JournalJson(pageSize = 2).export(source, output)
+        val target = MomentRepository()
+        val seeded = target.observeMoments().first()
+
+        repeat(2) {
+            JournalJson(pageSize = 2).import(ByteArrayInputStream(output.toByteArray()), target)
+        }
+
+        val expected = source.observeMoments().first() + seeded
+        val imported = target.observeMoments().first()
+        assertEquals(expected.size, imported.size)
+        assertEquals(expected.toSet(), imported.toSet())
+    }
+
+    @Test
+    fun `import ignores fields it does not know`() = runBlocking {
+        val json = """
+            [{"id":"a","imageUrl":"https://example.com/a.jpg","tone":"Calm","caption":null,
+              "createdAtMillis":1,"accentColor":4278190080,"palette":["#000000"]}]
+        """.trimIndent()
+        val target = MomentRepository()
+
+        JournalJson().import(ByteArrayInputStream(json.toByteArray()), target)
+
+        assertEquals("Calm", target.observeMoments().first().first { it.id == "a" }.tone)
+    }
+
+    @Test
+    fun `200k moments round-trip with flat heap`() = runBlocking {
+        val file = File.createTempFile("journal", ".json")
+        try {
+            val source = GeneratedRepository(JOURNAL_SIZE)
+            val exported = file.outputStream().use { JournalJson().export(source, it) }
+
+            val target = VerifyingRepository()
+            val baseline = liveHeapBytes()
+            val imported = file.inputStream().use { JournalJson().import(it, target) }
+
+            assertEquals(JOURNAL_SIZE, exported)
+            assertEquals(JOURNAL_SIZE, imported)
+            assertEquals(JOURNAL_SIZE, target.received)
+            // Holding the journal, or its JSON text, would take well over 60 MB at this size.
+            val growth = target.peakLiveHeapBytes - baseline
+            assertTrue("live heap grew by $growth bytes during import", growth < MAX_HEAP_GROWTH_BYTES)
+            assertTrue(file.length() > MAX_HEAP_GROWTH_BYTES)
+        } finally {
+            file.delete()
+        }
+    }
+
+    /** Records the batches it is handed; everything else goes to an in-memory repository. */
+    private class RecordingRepository : MomentRepository by InMemoryMomentRepository() {
+        val moments = mutableListOf<Moment>()
+        val batchSizes = mutableListOf<Int>()
+
+        override suspend fun addMoments(moments: Collection<Moment>) {
+            this.moments += moments
+            batchSizes += moments.size
+        }
+    }
+
+    /** Produces moment `i` of the journal on demand, newest first, without keeping any. */
+    private class GeneratedRepository(
+        private val size: Int
+    ) : MomentRepository by InMemoryMomentRepository() {
+        override suspend fun momentsAfter(key: MomentKey?, limit: Int): List<Moment> {
+            val start = key?.let { indexOf(it.id) + 1 } ?: 0
+            return (start until minOf(start + limit, size)).map(::generatedMoment)
+        }
+    }
+
+    /** Checks each imported moment against the generated one and drops it, sampling the live heap. */
+    private class VerifyingRepository : MomentRepository by InMemoryMomentRepository() {
+        var received = 0
+        var peakLiveHeapBytes = 0L
+
+        override suspend fun addMoments(moments: Collection<Moment>) {
+            for (moment in moments) {
+                assertEquals(generatedMoment(received), moment)
+                received++
+                if (received % HEAP_SAMPLE_INTERVAL == 0) {
+                    peakLiveHeapBytes = maxOf(peakLiveHeapBytes, liveHeapBytes())
+                }
+            }
+        }
+    }
+
+    private companion object {
+        private const val JOURNAL_SIZE = 200_000
+        private const val HEAP_SAMPLE_INTERVAL = 20_000
+        private const val MAX_HEAP_GROWTH_BYTES = 24L * 1024 * 1024
+
+        private fun indexOf(id: String): Int = id.removePrefix("moment-").toInt()
+
+        private fun generatedMoment(index: Int) = Moment(
+            id = "moment-%06d".format(index),
+            imageUrl = "https://images.example.com/journal/$index.jpg",
+            tone = "Tone ${index % 12}",
+            caption = if (index % 3 == 0) null else "Caption for moment number $index in the journal",
+            createdAtMillis = 1_700_000_000_000L - index * 60_000L,
+            accentColor = 0xFF000000L + index
+        )
+
+        private fun liveHeapBytes(): Long {
+            val runtime = Runtime.getRuntime()
+            System.gc()
+            return runtime.totalMemory() - runtime.freeMemory()
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package com.lumen.data
 
+import com.lumen.model.Moment
+import com.lumen.model.StatsPeriod
+import com.lumen.model.ToneCount
 import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
 import kotlinx.coroutines.test.runTest
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertNotEquals
+import org.junit.Assert.fail
 import org.junit.Assert.assertTrue
 import org.junit.Test
+import java.time.Instant
+import java.time.LocalDate
+import java.time.ZoneOffset
 
 class MomentRepositoryTest {
 
@@ -43,4 +52,149 @@ class MomentRepositoryTest {
         assertTrue(newMoment.createdAtMillis >= before)
         assertNotEquals(initial.first().id, newMoment.id)
     }
+
+    @Test
+    fun `addMoments emits once for the whole collection`() = runTest {
+        val repository = MomentRepository()
+        val emissions = mutableListOf<List<Moment>>()
+        val job = launch(UnconfinedTestDispatcher(testScheduler)) {
+            repository.observeMoments().collect(emissions::add)
+        }
+
+        repository.addMoments(
+            (0 until 100).map { index ->
+                Moment("import-$index", "https://example.com/$index.jpg", "Imported", null, index.toLong(), 0xFF000000)
+            }
+        )
+        job.cancel()
+
+        assertEquals(2, emissions.size)
+        assertEquals(103, emissions.last().size)
+        // The imports are older than the seed moments, so they follow them, newest first.
+        assertEquals("import-99", emissions.last()[3].id)
+        assertEquals("import-0", emissions.last().last().id)
+    }
+
+    @Test
+    fun `importing the same moments twice adds, indexes and counts them once`() = runTest {
+        val repository = InMemoryMomentRepository(seed = emptyList(), zone = ZoneOffset.UTC)
+        val journal = listOf(
+            momentAt("c", "Soft Dawn", "2024-04-03T08:00:00Z"),
+            momentAt("b", "Soft Dawn", "2024-04-02T08:00:00Z"),
+            momentAt("a", "Golden Hour", "2024-04-01T08:00:00Z")
+        )
+
+        repository.addMoments(journal)
+        repository.addMoments(journal)
+        repository.addMoments(journal.reversed())
+
+        assertEquals(listOf("c", "b", "a"), repository.observeMoments().first().map { it.id })
+        assertEquals(listOf("c", "b"), repository.searchMoments("soft", limit = 10).first().map { it.id })
+        assertEquals(
+            listOf(
+                count(StatsPeriod.MONTH, "2024-04-01", "Golden Hour"),
+                count(StatsPeriod.MONTH, "2024-04-01", "Soft Dawn", count = 2)
+            ),
+            repository.observeToneCounts(StatsPeriod.MONTH).first()
+        )
+    }
+
+    @Test
+    fun `imports older than the timeline are merged into newest-first order`() = runTest {
+        val repository = InMemoryMomentRepository(seed = emptyList(), zone = ZoneOffset.UTC)
+
+        repository.addMoments(listOf(momentAt("b", "Soft Dawn", "2024-04-02T08:00:00Z")))
+        repository.addMoments(
+            listOf(
+                momentAt("c", "Soft Dawn", "2024-04-03T08:00:00Z"),
+                momentAt("a", "Soft Dawn", "2024-04-01T08:00:00Z")
+            )
+        )
+
+        assertEquals(listOf("c", "b", "a"), repository.observeMoments().first().map { it.id })
+    }
+
+    @Test
+    fun `batch applies its moments together or not at all`() = runTest {
+        val repository = MomentRepository()
+        val initialSize = repository.observeMoments().first().size
+
+        try {
+            repository.batch {
+                addMoment("https://example.com/a.jpg", "Soft Dawn", null, 0xFF000000)
+                error("import failed")
+            }
+            fail("batch should rethrow")
+        } catch (expected: IllegalStateException) {
+            assertEquals(initialSize, repository.observeMoments().first().size)
+        }
+
+        val now = System.currentTimeMillis()
+        val added = repository.batch {
+            add(Moment("a", "https://example.com/a.jpg", "Soft Dawn", null, now, 0xFF000000))
+            add(Moment("b", "https://example.com/b.jpg", "Forest Quiet", "Second", now + 1, 0xFF2F4F4FL))
+            2
+        }
+
+        val moments = repository.observeMoments().first()
+        assertEquals(2, added)
+        assertEquals(initialSize + 2, moments.size)
+        assertEquals(listOf("Forest Quiet", "Soft Dawn"), moments.take(2).map { it.tone })
+    }
+
+    @Test
+    fun `search finds added moments by prefix without a rebuild`() = runTest {
+        val repository = MomentRepository()
+        val emissions = mutableListOf<List<Moment>>()
+        val job = launch(UnconfinedTestDispatcher(testScheduler)) {
+            repository.searchMoments("sof", limit = 10).collect(emissions::add)
+        }
+
+        repository.addMoment("https://example.com/a.jpg", "Golden Hour", "Soft light on the water", 0xFF000000)
+        job.cancel()
+
+        assertEquals(listOf("Soft Dawn", "Forest Quiet"), emissions.first().map { it.tone })
+        assertEquals(listOf("Soft Dawn", "Golden Hour", "Forest Quiet"), emissions.last().map { it.tone })
+        assertTrue(repository.searchMoments(" ", limit = 10).first().isEmpty())
+    }
+
+    @Test
+    fun `tone counts are kept per day, week and month as moments are added`() = runTest {
+        val repository = InMemoryMomentRepository(seed = emptyList(), zone = ZoneOffset.UTC)
+
+        repository.addMoments(
+            listOf(
+                momentAt("a", "Soft Dawn", "2024-03-31T23:30:00Z"),
+                momentAt("b", "Soft Dawn", "2024-04-01T08:00:00Z")
+            )
+        )
+        repository.addMoment("https://example.com/c.jpg", "Golden Hour", null, 0xFF000000)
+
+        val today = LocalDate.now(ZoneOffset.UTC).toString()
+        assertEquals(
+            listOf(
+                count(StatsPeriod.DAY, "2024-03-31", "Soft Dawn"),
+                count(StatsPeriod.DAY, "2024-04-01", "Soft Dawn"),
+                count(StatsPeriod.DAY, today, "Golden Hour")
+            ),
+            repository.observeToneCounts(StatsPeriod.DAY).first()
+        )
+        assertEquals(
+            listOf(
+                count(StatsPeriod.WEEK, "2024-03-25", "Soft Dawn"),
+                count(StatsPeriod.WEEK, "2024-04-01", "Soft Dawn")
+            ),
+            repository.observeToneCounts(StatsPeriod.WEEK).first().take(2)
+        )
+        assertEquals(
+            count(StatsPeriod.MONTH, "2024-03-01", "Soft Dawn"),
+            repository.observeToneCounts(StatsPeriod.MONTH).first().first()
+        )
+    }
+
+    private fun momentAt(id: String, tone: String, instant: String) =
+        Moment(id, "https://example.com/$id.jpg", tone, null, Instant.parse(instant).toEpochMilli(), 0xFF000000)
+
+    private fun count(period: StatsPeriod, start: String, tone: String, count: Int = 1) =
+        ToneCount(period, LocalDate.parse(start).toEpochDay(), tone, count)
 }
@@ -0,0 +1,63 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class MomentSearchTest {
+
+    @Test
+    fun `words are folded like the unicode61 tokenizer`() {
+        assertEquals(
+            listOf("cafe", "creme", "brulee", "at", "5pm"),
+            MomentSearch.tokens("Caf\u00e9 CR\u00c8ME-br\u00fbl\u00e9e, at 5pm!")
+        )
+        assertEquals(listOf("soft", "dawn"), MomentSearch.terms("  soft  Dawn soft "))
+        assertTrue(MomentSearch.terms(" -- ").isEmpty())
+    }
+
+    @Test
+    fun `match expressions make every word a prefix term`() {
+        assertEquals("gold* hou*", MomentSearch.matchExpression(MomentSearch.terms("Gold \"hou")))
+    }
+
+    @Test
+    fun `the index matches moments having a word for every prefix`() {
+        val dawn = moment("a", "Soft Dawn", "Slow coffee before sunrise", 3)
+        val forest = moment("b", "Forest Quiet", "Walked until the noise softened", 2)
+        val golden = moment("c", "Golden Hour", null, 1)
+        val index = MomentSearchIndex()
+        listOf(dawn, forest, golden).forEach(index::add)
+
+        assertEquals(setOf(dawn, forest), index.matches(MomentSearch.terms("sof")))
+        assertEquals(setOf(forest), index.matches(MomentSearch.terms("soft walk")))
+        assertEquals(setOf(golden), index.matches(MomentSearch.terms("HOUR gold")))
+        assertTrue(index.matches(MomentSearch.terms("soft hour")).isEmpty())
+    }
+
+    @Test
+    fun `tone and whole word matches rank first and ties go to the newest`() {
+        val captionPrefix = moment("a", "Forest Quiet", "Softened light", 4)
+        val captionWord = moment("b", "Forest Quiet", "A soft light", 3)
+        val toneWord = moment("c", "Soft Dawn", null, 2)
+        val olderToneWord = moment("d", "Soft Dusk", null, 1)
+
+        val ranked = MomentSearch.rank(
+            listOf(olderToneWord, captionPrefix, toneWord, captionWord),
+            MomentSearch.terms("soft"),
+            limit = 3
+        )
+
+        assertEquals(listOf(toneWord, olderToneWord, captionWord), ranked)
+    }
+
+    private fun moment(id: String, tone: String, caption: String?, createdAtMillis: Long) = Moment(
+        id = id,
+        imageUrl = "https://example.com/$id.jpg",
+        tone = tone,
+        caption = caption,
+        createdAtMillis = createdAtMillis,
+        accentColor = 0xFF000000
+    )
+}
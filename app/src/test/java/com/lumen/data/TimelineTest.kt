@@ -0,0 +1,71 @@
+package com.lumen.data
+
+import com.lumen.model.Moment
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class TimelineTest {
+
+    @Test
+    fun `prepending across chunk boundaries keeps newest first order`() {
+        val moments = (0 until Timeline.CHUNK_SIZE * 3 + 5).map(::moment)
+
+        val timeline = moments.fold(Timeline.EMPTY) { timeline, moment -> timeline.prepend(moment) }
+
+        val newestFirst = moments.reversed()
+        assertEquals(newestFirst.size, timeline.size)
+        assertEquals(newestFirst, timeline.toList())
+        newestFirst.indices.forEach { index -> assertSame(newestFirst[index], timeline[index]) }
+        assertEquals(newestFirst, Timeline.of(newestFirst))
+    }
+
+    @Test
+    fun `earlier snapshots are unaffected by later prepends`() {
+        val base = Timeline.of((0 until 40).map(::moment).reversed())
+
+        val left = base.prepend(moment(100))
+        val right = base.prepend(moment(200))
+
+        assertEquals(40, base.size)
+        assertEquals("moment-39", base.first().id)
+        assertEquals("moment-100", left.first().id)
+        assertEquals("moment-200", right.first().id)
+        assertEquals(base, left.drop(1))
+        assertEquals(base, right.drop(1))
+    }
+
+    @Test
+    fun `prependedSince reports only the new moments`() {
+        val base = Timeline.of((0 until 10).map(::moment).reversed())
+        val later = base.prepend(moment(10)).prepend(moment(11))
+        val sibling = base.prepend(moment(20))
+
+        assertEquals(listOf("moment-11", "moment-10"), later.prependedSince(base)?.map { it.id })
+        assertEquals(emptyList<Moment>(), later.prependedSince(later))
+        assertNull(base.prependedSince(later))
+        assertNull(later.prependedSince(sibling))
+    }
+
+    @Test
+    fun `in-memory repository emits timelines that share their tail`() = runTest {
+        val repository = InMemoryMomentRepository()
+        val before = repository.observeTimeline().value
+
+        repository.addMoment("https://example.com/image.jpg", "New Tone", null, 0xFF000000)
+
+        val after = repository.observeTimeline().value
+        assertEquals(listOf("New Tone"), after.prependedSince(before)?.map { it.tone })
+    }
+
+    private fun moment(index: Int) = Moment(
+        id = "moment-$index",
+        imageUrl = "https://example.com/$index.jpg",
+        tone = "Tone",
+        caption = null,
+        createdAtMillis = index.toLong(),
+        accentColor = 0xFF000000
+    )
+}
@@ -0,0 +1,86 @@
+package com.lumen.image
+
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class AccentColorExtractorTest {
+
+    private val dispatcher = StandardTestDispatcher()
+    private val images = mapOf(
+        "https://example.com/a.jpg" to byteArrayOf(1, 2, 3),
+        "content://media/a" to byteArrayOf(1, 2, 3),
+        "https://example.com/b.jpg" to byteArrayOf(4, 5, 6)
+    )
+    private val store = MapStore()
+    private var decodes = 0
+
+    @Test
+    fun `the same image bytes are quantized once whatever their url`() = runTest(dispatcher) {
+        val extractor = extractor()
+
+        val first = extractor.accentColorFor("https://example.com/a.jpg")
+        val again = extractor.accentColorFor("https://example.com/a.jpg")
+        val reimported = extractor.accentColorFor("content://media/a")
+
+        assertEquals(ORANGE, first)
+        assertEquals(first, again)
+        assertEquals(first, reimported)
+        assertEquals(1, decodes)
+        assertEquals(1, store.colors.size)
+    }
+
+    @Test
+    fun `stored colors survive a fresh extractor`() = runTest(dispatcher) {
+        extractor().accentColorFor("https://example.com/b.jpg")
+
+        val restored = extractor().accentColorFor("https://example.com/b.jpg")
+
+        assertEquals(ORANGE, restored)
+        assertEquals(1, decodes)
+    }
+
+    @Test
+    fun `unreadable and undecodable images get the default accent`() = runTest(dispatcher) {
+        val extractor = extractor(decoder = { _, _ -> null })
+
+        assertEquals(
+            AccentColorExtractor.DEFAULT_ACCENT_COLOR,
+            extractor.accentColorFor("https://example.com/missing.jpg")
+        )
+        assertEquals(
+            AccentColorExtractor.DEFAULT_ACCENT_COLOR,
+            extractor.accentColorFor("https://example.com/a.jpg")
+        )
+        assertEquals(0, store.colors.size)
+    }
+
+    private fun extractor(
+        decoder: AccentColorExtractor.PixelDecoder = AccentColorExtractor.PixelDecoder { _, _ ->
+            decodes++
+            IntArray(64) { index -> if (index < 48) GREY else ORANGE.toInt() }
+        }
+    ) = AccentColorExtractor(
+        reader = { imageUrl -> images[imageUrl] },
+        decoder = decoder,
+        store = store,
+        ioDispatcher = dispatcher,
+        computeDispatcher = dispatcher
+    )
+
+    private class MapStore : AccentColorExtractor.Store {
+        val colors = mutableMapOf<String, Long>()
+
+        override suspend fun get(contentHash: String): Long? = colors[contentHash]
+
+        override suspend fun put(contentHash: String, accentColor: Long) {
+            colors[contentHash] = accentColor
+        }
+    }
+
+    private companion object {
+        const val ORANGE = 0xFFFF8400L
+        const val GREY = 0xFF808080.toInt()
+    }
+}
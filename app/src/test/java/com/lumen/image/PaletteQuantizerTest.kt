@@ -0,0 +1,101 @@
+package com.lumen.image
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+class PaletteQuantizerTest {
+
+    @Test
+    fun `images with few colors keep them exactly`() {
+        val pixels = IntArray(300) { index ->
+            when {
+                index < 200 -> RED
+                index < 290 -> BLUE
+                else -> WHITE
+            }
+        }
+
+        val swatches = PaletteQuantizer.quantize(pixels)
+
+        assertEquals(
+            listOf(
+                PaletteQuantizer.Swatch(RED, 200),
+                PaletteQuantizer.Swatch(BLUE, 90),
+                PaletteQuantizer.Swatch(WHITE, 10)
+            ),
+            swatches
+        )
+    }
+
+    @Test
+    fun `palettes are capped at maxColors without losing pixels`() {
+        val pixels = IntArray(64 * 64) { index ->
+            0xFF000000.toInt() or ((index and 0xF) shl 20) or ((index shr 4 and 0xF) shl 12) or ((index shr 8) shl 4)
+        }
+
+        val swatches = PaletteQuantizer.quantize(pixels, maxColors = 16)
+
+        assertEquals(16, swatches.size)
+        assertEquals(pixels.size, swatches.sumOf { it.population })
+        assertEquals(swatches.sortedByDescending { it.population }, swatches)
+    }
+
+    @Test
+    fun `a vivid subject wins over a larger grey background`() {
+        val pixels = IntArray(1000) { index -> if (index < 750) GREY else ORANGE }
+
+        assertEquals(ORANGE, PaletteQuantizer.accentColor(pixels, fallback = FALLBACK))
+    }
+
+    @Test
+    fun `near black and white only win when nothing else is left`() {
+        val mostlyBlack = IntArray(1000) { index -> if (index < 950) BLACK else BLUE }
+
+        assertEquals(BLUE, PaletteQuantizer.accentColor(mostlyBlack, fallback = FALLBACK))
+        assertEquals(WHITE, PaletteQuantizer.accentColor(IntArray(10) { WHITE }, fallback = FALLBACK))
+    }
+
+    @Test
+    fun `transparent images fall back`() {
+        val pixels = IntArray(100) { RED and 0x00FFFFFF }
+
+        assertTrue(PaletteQuantizer.quantize(pixels).isEmpty())
+        assertEquals(FALLBACK, PaletteQuantizer.accentColor(pixels, fallback = FALLBACK))
+    }
+
+    @Test
+    fun `a sampled photo quantizes in about a millisecond`() {
+        val random = Random(23)
+        val pixels = IntArray(SAMPLE_PIXELS) { 0xFF000000.toInt() or random.nextInt(0x1000000) }
+
+        val median = medianNanos { PaletteQuantizer.accentColor(pixels, fallback = FALLBACK) }
+
+        assertTrue("median ${median / 1_000}us", median < 10_000_000)
+    }
+
+    private fun medianNanos(block: () -> Unit): Long {
+        repeat(20) { block() }
+        val samples = LongArray(21) {
+            val start = System.nanoTime()
+            block()
+            System.nanoTime() - start
+        }
+        samples.sort()
+        return samples[samples.size / 2]
+    }
+
+    private companion object {
+        const val RED = 0xFFFF0000.toInt()
+        const val BLUE = 0xFF0000FF.toInt()
+        const val WHITE = 0xFFFFFFFF.toInt()
+        const val BLACK = 0xFF000000.toInt()
+        const val GREY = 0xFF808080.toInt()
+        const val ORANGE = 0xFFFF8400.toInt()
+        const val FALLBACK = 0xFFC3A35B.toInt()
+
+        /** The most pixels a [AccentColorExtractor.SAMPLE_EDGE_PX] sampled decode can have. */
+        const val SAMPLE_PIXELS = 4 * AccentColorExtractor.SAMPLE_EDGE_PX * AccentColorExtractor.SAMPLE_EDGE_PX
+    }
+}
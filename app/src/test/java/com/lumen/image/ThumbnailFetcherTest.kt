@@ -0,0 +1,27 @@
+package com.lumen.image
+
+import coil.size.Dimension
+import coil.size.Size
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class ThumbnailFetcherTest {
+
+    @Test
+    fun `cell sizes share thumbnails within one size step`() {
+        assertEquals(448, ThumbnailFetcher.thumbnailEdge(Size(440, 440)))
+        assertEquals(448, ThumbnailFetcher.thumbnailEdge(Size(385, 448)))
+        assertEquals(512, ThumbnailFetcher.thumbnailEdge(Size(449, 449)))
+    }
+
+    @Test
+    fun `the longer side decides the edge`() {
+        assertEquals(320, ThumbnailFetcher.thumbnailEdge(Size(100, 300)))
+        assertEquals(320, ThumbnailFetcher.thumbnailEdge(Size(Dimension(300), Dimension.Undefined)))
+    }
+
+    @Test
+    fun `requests without a size get the smallest thumbnail`() {
+        assertEquals(ThumbnailFetcher.SIZE_STEP_PX, ThumbnailFetcher.thumbnailEdge(Size.ORIGINAL))
+    }
+}
@@ -0,0 +1,75 @@
+package com.lumen.image
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class ThumbnailPrefetcherTest {
+
+    private val loads = LinkedHashMap<String, (Boolean) -> Unit>()
+    private val cancelled = mutableListOf<String>()
+    private val prefetcher = ThumbnailPrefetcher(
+        loader = { thumbnail, _, onLoaded ->
+            loads[thumbnail.momentId] = onLoaded
+            ThumbnailPrefetcher.Cancellable { cancelled += thumbnail.momentId }
+        },
+        baseRows = 2,
+        maxRows = 4,
+        lookaheadSeconds = 0.5f
+    )
+
+    @Test
+    fun `windows extend past the visible rows in the scroll direction`() {
+        assertEquals(12..17, ThumbnailPrefetcher.prefetchWindow(6..11, columns = 3, rows = 2, forward = true, 100))
+        assertEquals(0..5, ThumbnailPrefetcher.prefetchWindow(6..11, columns = 3, rows = 2, forward = false, 100))
+        assertEquals(12..13, ThumbnailPrefetcher.prefetchWindow(6..11, columns = 3, rows = 2, forward = true, 14))
+        assertEquals(0, ThumbnailPrefetcher.prefetchWindow(0..5, columns = 3, rows = 2, forward = false, 100).count())
+    }
+
+    @Test
+    fun `faster scrolling looks further ahead`() {
+        update(visible = 0..5, rowsPerSecond = 0f)
+        assertEquals(ids(6..11), loads.keys.toList())
+
+        update(visible = 0..5, rowsPerSecond = 20f)
+        assertEquals(ids(6..17), loads.keys.toList())
+    }
+
+    @Test
+    fun `reversing cancels loads that left the window`() {
+        update(visible = 30..35, rowsPerSecond = 0f)
+        loads.getValue("moment-36").invoke(true)
+
+        update(visible = 30..35, rowsPerSecond = -1f)
+
+        assertEquals(ids(37..41), cancelled)
+        assertEquals(ids(24..29), loads.keys.drop(6))
+        val stats = prefetcher.stats.value
+        assertEquals(5, stats.cancelled)
+        assertEquals(1, stats.wastedDecodes)
+    }
+
+    @Test
+    fun `prefetched moments that scroll into view count as hits`() {
+        update(visible = 0..5, rowsPerSecond = 0f)
+        ids(6..8).forEach { loads.getValue(it).invoke(true) }
+        loads.getValue("moment-9").invoke(false)
+
+        update(visible = 3..8, rowsPerSecond = 2f)
+
+        val stats = prefetcher.stats.value
+        assertEquals(3, stats.hits)
+        assertEquals(4, stats.completed)
+        assertEquals(3, stats.decoded)
+        assertEquals(0, stats.wastedDecodes)
+        assertEquals(emptyList<String>(), cancelled)
+        assertEquals(3f / stats.enqueued, stats.hitRate)
+    }
+
+    private fun update(visible: IntRange, rowsPerSecond: Float) {
+        prefetcher.update(visible, columns = 3, rowsPerSecond = rowsPerSecond, edgePx = 448, itemCount = 100) { index ->
+            MomentThumbnail("moment-$index", "https://example.com/$index.jpg")
+        }
+    }
+
+    private fun ids(range: IntRange) = range.map { "moment-$it" }
+}
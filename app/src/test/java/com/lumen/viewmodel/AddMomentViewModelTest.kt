@@ -1,16 +1,24 @@
 package com.lumen.viewmodel
 
 import com.lumen.data.MomentRepository
+import com.lumen.image.AccentColorExtractor
+import com.lumen.util.MainDispatcherRule
+import kotlinx.coroutines.awaitCancellation
 import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.test.advanceUntilIdle
 import kotlinx.coroutines.test.runTest
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertNull
+import org.junit.Rule
 import org.junit.Test
 
 class AddMomentViewModelTest {
 
+    @get:Rule
+    val dispatcherRule = MainDispatcherRule()
+
     @Test
-    fun `saveMoment commits user input and resets form state`() = runTest {
+    fun `saveMoment commits user input and resets form state`() = runTest(dispatcherRule.testDispatcher) {
         val repository = MomentRepository()
         val viewModel = AddMomentViewModel(repository)
 
@@ -20,6 +28,7 @@ class AddMomentViewModelTest {
         viewModel.caption.value = "Unwinding after dusk"
 
         viewModel.saveMoment()
+        advanceUntilIdle()
 
         val moments = repository.observeMoments().first()
         val saved = moments.first()
@@ -33,17 +42,51 @@ class AddMomentViewModelTest {
     }
 
     @Test
-    fun `blank captions are persisted as null`() = runTest {
+    fun `blank captions are persisted as null`() = runTest(dispatcherRule.testDispatcher) {
         val repository = MomentRepository()
         val viewModel = AddMomentViewModel(repository)
 
         viewModel.caption.value = "   "
 
         viewModel.saveMoment()
+        advanceUntilIdle()
 
         val saved = repository.observeMoments().first().first()
 
         assertNull(saved.caption)
         assertEquals("", viewModel.caption.value)
     }
+
+    @Test
+    fun `saved moments take the accent color of their image`() = runTest(dispatcherRule.testDispatcher) {
+        val repository = MomentRepository()
+        val requested = mutableListOf<String>()
+        val viewModel = AddMomentViewModel(repository) { imageUrl ->
+            requested += imageUrl
+            0xFF3366CCL
+        }
+
+        viewModel.imageUrl.value = "https://example.com/sunset.jpg"
+        viewModel.saveMoment()
+        advanceUntilIdle()
+
+        assertEquals(listOf("https://example.com/sunset.jpg"), requested)
+        assertEquals(0xFF3366CCL, repository.observeMoments().first().first().accentColor)
+    }
+
+    @Test
+    fun `moments are saved before their accent color is known`() = runTest(dispatcherRule.testDispatcher) {
+        val repository = MomentRepository()
+        val initialSize = repository.observeMoments().first().size
+        val viewModel = AddMomentViewModel(repository) { awaitCancellation() }
+
+        viewModel.caption.value = "Saved anyway"
+        viewModel.saveMoment()
+        advanceUntilIdle()
+
+        val moments = repository.observeMoments().first()
+        assertEquals(initialSize + 1, moments.size)
+        assertEquals("Saved anyway", moments.first().caption)
+        assertEquals(AccentColorExtractor.DEFAULT_ACCENT_COLOR, moments.first().accentColor)
+    }
 }
@@ -1,6 +1,8 @@
 package com.lumen.viewmodel
 
+import androidx.paging.testing.asSnapshot
 import com.lumen.data.MomentRepository
+import com.lumen.model.Moment
 import com.lumen.util.MainDispatcherRule
 import kotlinx.coroutines.flow.collect
 import kotlinx.coroutines.flow.drop
@@ -22,14 +24,33 @@ class FeedViewModelTest {
     val dispatcherRule = MainDispatcherRule()
 
     @Test
-    fun `uiState reflects repository contents`() = runTest(dispatcherRule.testDispatcher) {
+    fun `moments reflect repository contents`() = runTest(dispatcherRule.testDispatcher) {
         val repository = MomentRepository()
         val viewModel = FeedViewModel(repository)
 
-        val state = viewModel.uiState.first { it.moments.isNotEmpty() }
+        val moments = viewModel.moments.asSnapshot()
 
-        assertEquals(3, state.moments.size)
-        assertFalse(state.isRefreshing)
+        assertEquals(repository.observeMoments().first(), moments)
+        assertFalse(viewModel.uiState.value.isRefreshing)
+    }
+
+    @Test
+    fun `paging to the oldest moment keeps only a bounded window loaded`() = runTest(dispatcherRule.testDispatcher) {
+        val repository = MomentRepository()
+        repeat(40) { index ->
+            repository.addMoment("https://example.com/$index.jpg", "Tone $index", null, 0xFF000000)
+        }
+        val viewModel = FeedViewModel(repository, pageSize = 5)
+
+        val moments = viewModel.moments.asSnapshot {
+            scrollTo(42)
+        }
+
+        // Moments added in the same millisecond are ordered by id, just like the keyset.
+        val newestFirst = repository.observeMoments().first()
+            .sortedWith(compareByDescending<Moment> { it.createdAtMillis }.thenByDescending { it.id })
+        assertTrue(moments.size <= 5 * 4)
+        assertEquals(newestFirst.takeLast(moments.size).map { it.id }, moments.map { it.id })
     }
 
     @Test
@@ -41,7 +62,7 @@ class FeedViewModelTest {
         val job = launch {
             viewModel.uiState
                 .drop(1)
-                .take(3)
+                .take(2)
                 .collect(emissions::add)
         }
 
@@ -55,12 +76,8 @@ class FeedViewModelTest {
 
         job.join()
 
-        assertEquals(3, emissions.size)
-        assertTrue(emissions.first().moments.isNotEmpty())
-        assertFalse(emissions.first().isRefreshing)
-        assertTrue(emissions[1].isRefreshing)
-        assertFalse(emissions[2].isRefreshing)
-        assertEquals(emissions.first().moments, emissions[1].moments)
-        assertEquals(emissions.first().moments, emissions[2].moments)
+        assertEquals(2, emissions.size)
+        assertTrue(emissions[0].isRefreshing)
+        assertFalse(emissions[1].isRefreshing)
     }
 }
@@ -0,0 +1,67 @@
+package com.lumen.viewmodel
+
+import com.lumen.data.MomentRepository
+import com.lumen.model.Moment
+import com.lumen.util.MainDispatcherRule
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+
+class SearchViewModelTest {
+
+    @get:Rule
+    val dispatcherRule = MainDispatcherRule()
+
+    private val searches = mutableListOf<String>()
+    private val repository = MomentRepository().let { base ->
+        object : MomentRepository by base {
+            override fun searchMoments(query: String, limit: Int): Flow<List<Moment>> {
+                searches += query
+                return base.searchMoments(query, limit)
+            }
+        }
+    }
+
+    @Test
+    fun `only the query typing paused on is searched`() = runTest(dispatcherRule.testDispatcher) {
+        val viewModel = SearchViewModel(repository, debounceMillis = 250)
+        val job = launch { viewModel.results.collect {} }
+        runCurrent()
+
+        for (query in listOf("f", "fo", "for")) {
+            viewModel.onQueryChange(query)
+            advanceTimeBy(100)
+        }
+        assertTrue(searches.isEmpty())
+
+        advanceTimeBy(200)
+        runCurrent()
+
+        assertEquals(listOf("for"), searches)
+        assertEquals(listOf("Forest Quiet"), viewModel.results.value.map { it.tone })
+        job.cancel()
+    }
+
+    @Test
+    fun `clearing the query empties the results without waiting`() = runTest(dispatcherRule.testDispatcher) {
+        val viewModel = SearchViewModel(repository, debounceMillis = 250)
+        val job = launch { viewModel.results.collect {} }
+        viewModel.onQueryChange("golden")
+        advanceTimeBy(300)
+        runCurrent()
+        assertEquals(1, viewModel.results.value.size)
+
+        viewModel.onQueryChange("  ")
+        runCurrent()
+
+        assertTrue(viewModel.results.value.isEmpty())
+        assertEquals(listOf("golden"), searches)
+        job.cancel()
+    }
+}
@@ -1,5 +1,6 @@
 plugins {
     `java-library`
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 java {
@@ -20,3 +21,15 @@ dependencies {
     implementation(gradleApi())
     testImplementation("junit:junit:4.13.2")
 }
+
+// ./gradlew -p buildSrc jmh
+// Narrow a run with -PjmhIncludes=<regex>, e.g. -PjmhIncludes=SanitizePromptHeaderBenchmark.transform
+jmh {
+    jmhVersion.set("1.37")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
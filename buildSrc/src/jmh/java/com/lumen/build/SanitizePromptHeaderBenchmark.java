@@ -0,0 +1,115 @@
+package com.lumen.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Hot paths of {@link SanitizePromptHeaderTransform}. Run with the GC profiler (configured in
+ * {@code buildSrc/build.gradle.kts}) to track allocation per operation alongside time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SanitizePromptHeaderBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class StringValueState {
+        String promptHeader;
+
+        @Setup
+        public void setUp() {
+            promptHeader = SyntheticAar.BROKEN_PROMPT_HEADER;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DocumentState {
+        @Param({"16", "256"})
+        public int valuesFileKb;
+
+        @Param({"true", "false"})
+        public boolean brokenPromptHeader;
+
+        String document;
+
+        @Setup
+        public void setUp() {
+            document = SyntheticAar.valuesDocument(valuesFileKb * 1024, brokenPromptHeader, new Random(7));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ArchiveState {
+        @Param({"1", "40"})
+        public int localeCount;
+
+        @Param({"16", "128"})
+        public int valuesFileKb;
+
+        @Param({"0", "0.1", "1"})
+        public double matchDensity;
+
+        @Param({"4"})
+        public int maxParallelism;
+
+        File directory;
+        File input;
+        File output;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("prompt-header-benchmark").toFile();
+            input = new File(directory, "library.aar");
+            output = new File(directory, "library-sanitized.aar");
+            SyntheticAar.write(input, localeCount, valuesFileKb * 1024, matchDensity, 4 * 1024 * 1024, 11);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            try (Stream<Path> paths = Files.walk(directory.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Benchmark
+    public String sanitizePlaceholders(StringValueState state) {
+        return SanitizePromptHeaderTransform.sanitizePlaceholders(state.promptHeader);
+    }
+
+    @Benchmark
+    public String escapeInvalidUnicodeEscapes(StringValueState state) {
+        return SanitizePromptHeaderTransform.escapeInvalidUnicodeEscapes(state.promptHeader);
+    }
+
+    @Benchmark
+    public String sanitizeStringValue(StringValueState state) {
+        return SanitizePromptHeaderTransform.sanitizeStringValue(state.promptHeader);
+    }
+
+    /** The in-memory core of {@code sanitizePromptHeaderFile}, without the file round trip. */
+    @Benchmark
+    public String sanitizePromptHeaderFile(DocumentState state) {
+        return SanitizePromptHeaderTransform.sanitizePromptHeaderContent(state.document);
+    }
+
+    @Benchmark
+    public SanitizePromptHeaderTransform.Outcome transform(ArchiveState state) throws IOException {
+        return SanitizePromptHeaderTransform.sanitizeArchive(state.input, () -> state.output, state.maxParallelism);
+    }
+}
@@ -0,0 +1,84 @@
+package com.lumen.build;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Generates AARs and values documents shaped like real library artifacts for the benchmarks. */
+final class SyntheticAar {
+    static final String BROKEN_PROMPT_HEADER = "\\\"{ user }\\\" - {org} - {user} \\U0001F600 \\u12";
+
+    private SyntheticAar() {}
+
+    /**
+     * Writes an AAR with a {@code classes.jar} of {@code classesJarBytes} and {@code localeCount}
+     * values files of roughly {@code valuesFileBytes} each. About {@code matchDensity} of the locales
+     * carry a prompt_header string that needs sanitizing.
+     */
+    static void write(
+            File target, int localeCount, int valuesFileBytes, double matchDensity, int classesJarBytes, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(target))) {
+            putEntry(zos, "AndroidManifest.xml",
+                    "<manifest package=\"com.example.synthetic\"/>".getBytes(StandardCharsets.UTF_8));
+            byte[] classes = new byte[classesJarBytes];
+            random.nextBytes(classes);
+            putEntry(zos, "classes.jar", classes);
+            putEntry(zos, "R.txt", "int string prompt_header 0x7f0e0001\n".getBytes(StandardCharsets.UTF_8));
+            int matches = (int) Math.round(localeCount * matchDensity);
+            for (int locale = 0; locale < localeCount; locale++) {
+                String directory = locale == 0 ? "res/values/" : "res/values-l" + locale + "/";
+                String name = directory + (locale == 0 ? "values.xml" : "values-l" + locale + ".xml");
+                boolean broken = locale < matches;
+                putEntry(zos, name, valuesDocument(valuesFileBytes, broken, random)
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /** A values document of roughly {@code bytes}, optionally ending with a broken prompt_header. */
+    static String valuesDocument(int bytes, boolean withBrokenPromptHeader, Random random) {
+        StringBuilder document = new StringBuilder(bytes + 256);
+        document.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+                .append("<resources xmlns:xliff=\"urn:oasis:names:tc:xliff:document:1.2\">\n");
+        int index = 0;
+        while (document.length() < bytes) {
+            switch (index % 4) {
+                case 0:
+                    document.append("    <string name=\"label_").append(index).append("\">Label ")
+                            .append(random.nextInt(100_000)).append(" with %1$s</string>\n");
+                    break;
+                case 1:
+                    document.append("    <item type=\"string\" name=\"item_").append(index)
+                            .append("\">Item <xliff:g id=\"count\">%d</xliff:g></item>\n");
+                    break;
+                case 2:
+                    document.append("    <plurals name=\"plural_").append(index).append("\">\n")
+                            .append("        <item quantity=\"one\">One \\u00B0</item>\n")
+                            .append("        <item quantity=\"other\">Many</item>\n")
+                            .append("    </plurals>\n");
+                    break;
+                default:
+                    document.append("    <dimen name=\"spacing_").append(index).append("\">")
+                            .append(random.nextInt(64)).append("dp</dimen>\n");
+                    break;
+            }
+            index++;
+        }
+        if (withBrokenPromptHeader) {
+            document.append("    <string name=\"prompt_header\">").append(BROKEN_PROMPT_HEADER).append("</string>\n");
+        }
+        return document.append("</resources>\n").toString();
+    }
+
+    private static void putEntry(ZipOutputStream zos, String name, byte[] contents) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(contents);
+        zos.closeEntry();
+    }
+}
@@ -0,0 +1,25 @@
+package com.lumen.build;
+
+/** What one run of {@link SanitizePromptHeaderTransform} cost for a single input artifact. */
+final class ArtifactMetrics {
+    final String artifact;
+    SanitizePromptHeaderTransform.Outcome outcome;
+    long wallTimeNanos;
+    /** Bytes read from the input archive: central directory, inflated entries and copied entries. */
+    long bytesRead;
+    /** Size of the rewritten archive; zero when the input is handed through. */
+    long bytesWritten;
+    int valuesFilesScanned;
+    int stringsPatched;
+    /** Whether the rewritten archive was reused from {@link TransformMemo} instead of written again. */
+    boolean memoized;
+
+    ArtifactMetrics(String artifact) {
+        this.artifact = artifact;
+    }
+
+    /** Whether the input was handed through as the output instead of being rewritten. */
+    boolean isCopyThrough() {
+        return outcome != SanitizePromptHeaderTransform.Outcome.REWRITTEN;
+    }
+}
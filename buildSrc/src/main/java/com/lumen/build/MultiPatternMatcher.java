@@ -0,0 +1,157 @@
+package com.lumen.build;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Aho-Corasick automaton over ASCII patterns, matched ignoring ASCII case. The goto and failure
+ * functions are folded into one transition table at compile time, so matching costs a single table
+ * lookup per input byte no matter how many patterns there are.
+ */
+final class MultiPatternMatcher {
+    private static final int ALPHABET_BITS = 7;
+    private static final int ALPHABET = 1 << ALPHABET_BITS;
+
+    private final int[] transitions;
+    private final int[] depth;
+    private final int[] patternAt;
+    private final boolean[] accepting;
+
+    private MultiPatternMatcher(int[] transitions, int[] depth, int[] patternAt, boolean[] accepting) {
+        this.transitions = transitions;
+        this.depth = depth;
+        this.patternAt = patternAt;
+        this.accepting = accepting;
+    }
+
+    /** Compiles non-empty ASCII {@code patterns}; their indices are what {@link #matchExact} returns. */
+    static MultiPatternMatcher compile(List<String> patterns) {
+        int maxStates = 1;
+        for (String pattern : patterns) {
+            maxStates += pattern.length();
+        }
+        int[] transitions = new int[maxStates * ALPHABET];
+        Arrays.fill(transitions, -1);
+        int[] depth = new int[maxStates];
+        int[] patternAt = new int[maxStates];
+        Arrays.fill(patternAt, -1);
+        boolean[] accepting = new boolean[maxStates];
+        int states = 1;
+        for (int index = 0; index < patterns.size(); index++) {
+            String pattern = patterns.get(index).toLowerCase(Locale.ROOT);
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Patterns must not be empty");
+            }
+            int state = 0;
+            for (int offset = 0; offset < pattern.length(); offset++) {
+                char symbol = pattern.charAt(offset);
+                if (symbol >= ALPHABET) {
+                    throw new IllegalArgumentException("Pattern is not ASCII: " + patterns.get(index));
+                }
+                int next = transitions[(state << ALPHABET_BITS) | symbol];
+                if (next < 0) {
+                    next = states++;
+                    depth[next] = offset + 1;
+                    transitions[(state << ALPHABET_BITS) | symbol] = next;
+                }
+                state = next;
+            }
+            if (patternAt[state] >= 0) {
+                throw new IllegalArgumentException("Duplicate pattern: " + patterns.get(index));
+            }
+            patternAt[state] = index;
+            accepting[state] = true;
+        }
+
+        // Breadth-first, so a state's failure target is complete before the state itself is visited.
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int next = transitions[symbol];
+            if (next < 0) {
+                transitions[symbol] = 0;
+            } else {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] |= accepting[failure[state]];
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int slot = (state << ALPHABET_BITS) | symbol;
+                int fallback = transitions[(failure[state] << ALPHABET_BITS) | symbol];
+                int next = transitions[slot];
+                if (next < 0) {
+                    transitions[slot] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+        for (int state = 0; state < states; state++) {
+            for (int symbol = 'A'; symbol <= 'Z'; symbol++) {
+                transitions[(state << ALPHABET_BITS) | symbol] =
+                        transitions[(state << ALPHABET_BITS) | (symbol + ('a' - 'A'))];
+            }
+        }
+        return new MultiPatternMatcher(
+                Arrays.copyOf(transitions, states * ALPHABET),
+                Arrays.copyOf(depth, states),
+                Arrays.copyOf(patternAt, states),
+                Arrays.copyOf(accepting, states));
+    }
+
+    /** Whether any pattern occurs in {@code haystack}. Non-ASCII bytes never take part in a match. */
+    boolean containsAny(byte[] haystack) {
+        return scanner().feed(haystack, 0, haystack.length);
+    }
+
+    /** A fresh incremental search, for input that arrives in chunks. */
+    Scanner scanner() {
+        return new Scanner();
+    }
+
+    /** Searches input fed in chunks; matches may span chunk boundaries. Not thread-safe. */
+    final class Scanner {
+        private int state;
+
+        private Scanner() {}
+
+        /** Returns whether any pattern has occurred in the input fed so far, including {@code chunk}. */
+        boolean feed(byte[] chunk, int offset, int length) {
+            int current = state;
+            if (accepting[current]) {
+                return true;
+            }
+            for (int index = offset; index < offset + length; index++) {
+                byte value = chunk[index];
+                current = value < 0 ? 0 : transitions[(current << ALPHABET_BITS) | value];
+                if (accepting[current]) {
+                    state = current;
+                    return true;
+                }
+            }
+            state = current;
+            return false;
+        }
+    }
+
+    /** Returns the index of the pattern equal to {@code text[from, to)}, or -1. */
+    int matchExact(CharSequence text, int from, int to) {
+        int state = 0;
+        for (int index = from; index < to; index++) {
+            char symbol = text.charAt(index);
+            if (symbol >= ALPHABET) {
+                return -1;
+            }
+            state = transitions[(state << ALPHABET_BITS) | symbol];
+            if (depth[state] != index - from + 1) {
+                return -1;
+            }
+        }
+        return patternAt[state];
+    }
+}
@@ -0,0 +1,69 @@
+package com.lumen.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Audits one AAR for {@link PromptHeaderAuditTask}, writing the diff-style block for it (empty when
+ * the rules would leave it alone) to its own fragment file.
+ */
+public abstract class PromptHeaderAuditAction implements WorkAction<PromptHeaderAuditAction.Parameters> {
+    public interface Parameters extends WorkParameters {
+        RegularFileProperty getAar();
+
+        Property<String> getComponent();
+
+        ListProperty<String> getRules();
+
+        RegularFileProperty getFragment();
+    }
+
+    @Override
+    public void execute() {
+        File aar = getParameters().getAar().get().getAsFile();
+        File fragment = getParameters().getFragment().get().getAsFile();
+        try {
+            List<ResourceFinding> findings = SanitizePromptHeaderTransform.auditArchive(
+                    aar, ResourceRules.forSpecs(getParameters().getRules().get()));
+            String block = findings.isEmpty()
+                    ? ""
+                    : formatFindings(getParameters().getComponent().get(), aar.getName(), findings);
+            Files.writeString(fragment.toPath(), block, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new GradleException("Failed to audit " + aar.getAbsolutePath(), ex);
+        }
+    }
+
+    /** Renders {@code findings} as unified-diff-like hunks, one per rewritten element. */
+    static String formatFindings(String component, String fileName, List<ResourceFinding> findings) {
+        StringBuilder block = new StringBuilder();
+        block.append("=== ").append(component).append(" (").append(fileName).append(")\n");
+        String currentEntry = null;
+        for (ResourceFinding finding : findings) {
+            if (!finding.entryName.equals(currentEntry)) {
+                currentEntry = finding.entryName;
+                block.append("--- a/").append(currentEntry).append('\n');
+                block.append("+++ b/").append(currentEntry).append('\n');
+            }
+            block.append("@@ line ").append(finding.line).append(" @@ ").append(finding.resourceName).append('\n');
+            appendPrefixed(block, '-', finding.original);
+            appendPrefixed(block, '+', finding.sanitized);
+        }
+        return block.append('\n').toString();
+    }
+
+    private static void appendPrefixed(StringBuilder block, char prefix, String text) {
+        for (String line : text.split("\n", -1)) {
+            block.append(prefix).append(line).append('\n');
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.lumen.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Scans resolved AARs with the same detection as {@link SanitizePromptHeaderTransform}, without
+ * changing anything, and reports what the transform would rewrite in each one as a diff. Use it to
+ * decide which modules belong on the transform's allow-list.
+ *
+ * <p>Every distinct AAR is audited by its own worker, and most of them are settled by the byte
+ * pre-scan of their values files alone.
+ */
+public abstract class PromptHeaderAuditTask extends DefaultTask {
+    private static final String AAR_EXTENSION = ".aar";
+
+    /** The artifacts to audit; only files ending in {@code .aar} are scanned. */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public abstract ConfigurableFileCollection getArtifactFiles();
+
+    /** Identifies {@link #getArtifactFiles()} in the report. */
+    @Internal
+    public abstract ListProperty<ResolvedArtifactResult> getResolvedArtifacts();
+
+    /** Rule specs in the format of {@link SanitizePromptHeaderTransform.Parameters#getRules()}. */
+    @Input
+    public abstract ListProperty<String> getRules();
+
+    @OutputFile
+    public abstract RegularFileProperty getReportFile();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /** Adds every artifact of {@code artifacts}, typically a lenient view of a classpath configuration. */
+    public void from(ArtifactCollection artifacts) {
+        getArtifactFiles().from(artifacts.getArtifactFiles());
+        getResolvedArtifacts().addAll(artifacts.getResolvedArtifacts());
+    }
+
+    @TaskAction
+    public void audit() {
+        Map<String, ResolvedArtifactResult> aars = new TreeMap<>();
+        for (ResolvedArtifactResult artifact : getResolvedArtifacts().get()) {
+            if (artifact.getFile().getName().endsWith(AAR_EXTENSION)) {
+                aars.putIfAbsent(componentName(artifact) + "\n" + artifact.getFile().getName(), artifact);
+            }
+        }
+
+        File fragments = getTemporaryDir();
+        List<File> fragmentFiles = new ArrayList<>(aars.size());
+        List<String> rules = getRules().get();
+        WorkQueue queue = getWorkerExecutor().noIsolation();
+        for (ResolvedArtifactResult artifact : aars.values()) {
+            File fragment = new File(fragments, fragmentFiles.size() + ".diff");
+            fragmentFiles.add(fragment);
+            queue.submit(PromptHeaderAuditAction.class, parameters -> {
+                parameters.getAar().set(artifact.getFile());
+                parameters.getComponent().set(componentName(artifact));
+                parameters.getRules().set(rules);
+                parameters.getFragment().set(fragment);
+            });
+        }
+        queue.await();
+
+        File report = getReportFile().get().getAsFile();
+        int flagged = 0;
+        try (Writer writer = Files.newBufferedWriter(report.toPath(), StandardCharsets.UTF_8)) {
+            StringBuilder body = new StringBuilder();
+            for (File fragment : fragmentFiles) {
+                String block = Files.readString(fragment.toPath(), StandardCharsets.UTF_8);
+                if (!block.isEmpty()) {
+                    flagged++;
+                    body.append(block);
+                }
+            }
+            writer.write(summary(flagged, aars.size()) + "\n\n");
+            writer.write(body.toString());
+        } catch (IOException ex) {
+            throw new GradleException("Failed to write prompt_header audit report to " + report, ex);
+        }
+        getLogger().lifecycle("{}, see {}", summary(flagged, aars.size()), report);
+    }
+
+    private static String summary(int flagged, int total) {
+        return "prompt_header audit: " + flagged + " of " + total + " AARs would be rewritten";
+    }
+
+    private static String componentName(ResolvedArtifactResult artifact) {
+        return artifact.getId().getComponentIdentifier().getDisplayName();
+    }
+}
@@ -0,0 +1,356 @@
+package com.lumen.build;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Minimal zip reader that exposes the central directory and the raw (still compressed) bytes of
+ * each entry, so unchanged entries can be copied into a new archive without an inflate/deflate
+ * round trip.
+ *
+ * <p>Everything is read with positional reads on one channel, so {@link #close()} releases the
+ * file at once. A memory mapping would stay open until it is garbage collected, and on Windows
+ * keep the AAR in Gradle's cache locked until then. {@link #scan} streams the compressed bytes
+ * through a small buffer as well, so large entries never sit on the heap.
+ */
+final class RawZipReader implements Closeable {
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int FLAG_ENCRYPTED = 0x1;
+    private static final int SCAN_CHUNK_SIZE = 64 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final List<Entry> entries;
+    private final AtomicLong bytesRead;
+
+    private RawZipReader(File file, FileChannel channel, List<Entry> entries, AtomicLong bytesRead) {
+        this.file = file;
+        this.channel = channel;
+        this.entries = entries;
+        this.bytesRead = bytesRead;
+    }
+
+    static RawZipReader open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        AtomicLong bytesRead = new AtomicLong();
+        try {
+            List<Entry> entries = readCentralDirectory(file, channel, bytesRead);
+            return new RawZipReader(file, channel, entries, bytesRead);
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    /** Entries in central directory order. */
+    List<Entry> entries() {
+        return entries;
+    }
+
+    /** Bytes read from the archive so far, including raw transfers; safe to call from any thread. */
+    long bytesRead() {
+        return bytesRead.get();
+    }
+
+    /** Returns the uncompressed contents of {@code entry}. */
+    byte[] read(Entry entry) throws IOException {
+        ByteBuffer raw = readFully(dataOffset(entry), toIntSize(entry.compressedSize, entry));
+        byte[] data;
+        if (entry.method == METHOD_STORED) {
+            data = new byte[raw.remaining()];
+            raw.get(data);
+        } else if (entry.method == METHOD_DEFLATED) {
+            data = inflate(raw, toIntSize(entry.size, entry), entry);
+        } else {
+            throw new ZipException(
+                    "Unsupported compression method " + entry.method + " for " + entry.name + " in " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if (crc.getValue() != entry.crc) {
+            throw new ZipException("CRC mismatch for " + entry.name + " in " + file);
+        }
+        return data;
+    }
+
+    /**
+     * Inflates {@code entry} chunk by chunk into {@code visitor} without holding more than one chunk
+     * on the heap. Stops early, skipping the CRC check, as soon as the visitor returns {@code true};
+     * returns whether it did.
+     */
+    boolean scan(Entry entry, ChunkVisitor visitor) throws IOException {
+        long position = dataOffset(entry);
+        long remaining = entry.compressedSize;
+        byte[] chunk = new byte[SCAN_CHUNK_SIZE];
+        CRC32 crc = new CRC32();
+        long total = 0;
+        if (entry.method == METHOD_STORED) {
+            while (remaining > 0) {
+                int length = (int) Math.min(chunk.length, remaining);
+                readFully(position, ByteBuffer.wrap(chunk, 0, length));
+                position += length;
+                remaining -= length;
+                if (visitor.visit(chunk, length)) {
+                    return true;
+                }
+                crc.update(chunk, 0, length);
+                total += length;
+            }
+        } else if (entry.method == METHOD_DEFLATED) {
+            Inflater inflater = new Inflater(true);
+            ByteBuffer raw = ByteBuffer.allocateDirect(SCAN_CHUNK_SIZE);
+            try {
+                while (!inflater.finished()) {
+                    if (inflater.needsInput() && remaining > 0) {
+                        raw.clear().limit((int) Math.min(raw.capacity(), remaining));
+                        readFully(position, raw);
+                        position += raw.limit();
+                        remaining -= raw.limit();
+                        raw.flip();
+                        inflater.setInput(raw);
+                    }
+                    int length = inflater.inflate(chunk);
+                    if (length == 0 && ((inflater.needsInput() && remaining == 0) || inflater.needsDictionary())) {
+                        break;
+                    }
+                    if (visitor.visit(chunk, length)) {
+                        return true;
+                    }
+                    crc.update(chunk, 0, length);
+                    total += length;
+                }
+            } catch (DataFormatException exception) {
+                ZipException zipException = new ZipException("Corrupt deflate stream for " + entry.name);
+                zipException.initCause(exception);
+                throw zipException;
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new ZipException(
+                    "Unsupported compression method " + entry.method + " for " + entry.name + " in " + file);
+        }
+        if (total != entry.size || crc.getValue() != entry.crc) {
+            throw new ZipException("Size or CRC mismatch for " + entry.name + " in " + file);
+        }
+        return false;
+    }
+
+    /** Receives the inflated contents of an entry from {@link #scan}. */
+    interface ChunkVisitor {
+        /** Returns {@code true} to stop scanning; {@code chunk} is reused after this returns. */
+        boolean visit(byte[] chunk, int length) throws IOException;
+    }
+
+    /** Copies the compressed bytes of {@code entry} verbatim into {@code target}. */
+    void transferRaw(Entry entry, WritableByteChannel target) throws IOException {
+        long position = dataOffset(entry);
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new ZipException("Truncated data for " + entry.name + " in " + file);
+            }
+            position += transferred;
+            remaining -= transferred;
+            bytesRead.addAndGet(transferred);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long dataOffset(Entry entry) throws IOException {
+        ByteBuffer header = readFully(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + entry.name + " in " + file);
+        }
+        int nameLength = Short.toUnsignedInt(header.getShort(26));
+        int extraLength = Short.toUnsignedInt(header.getShort(28));
+        return entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        return readFully(channel, position, length, file, bytesRead);
+    }
+
+    /** Fills the remaining space of {@code buffer} from {@code position} on. */
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        readInto(channel, position, buffer, file, bytesRead);
+    }
+
+    /** A little-endian heap buffer holding {@code [position, position + length)}. */
+    private static ByteBuffer readFully(
+            FileChannel channel, long position, int length, File file, AtomicLong bytesRead) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readInto(channel, position, buffer, file, bytesRead);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readInto(
+            FileChannel channel, long position, ByteBuffer buffer, File file, AtomicLong bytesRead) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position() - start);
+            if (read < 0) {
+                throw new ZipException("Unexpected end of " + file);
+            }
+        }
+        bytesRead.addAndGet(buffer.position() - start);
+    }
+
+    private static byte[] inflate(ByteBuffer raw, int size, Entry entry) throws ZipException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(raw);
+            byte[] data = new byte[size];
+            int offset = 0;
+            while (offset < size) {
+                int inflated = inflater.inflate(data, offset, size - offset);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += inflated;
+            }
+            if (offset != size) {
+                throw new ZipException("Truncated deflate stream for " + entry.name);
+            }
+            return data;
+        } catch (DataFormatException exception) {
+            ZipException zipException = new ZipException("Corrupt deflate stream for " + entry.name);
+            zipException.initCause(exception);
+            throw zipException;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int toIntSize(long size, Entry entry) throws ZipException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new ZipException("Entry " + entry.name + " is too large to read into memory");
+        }
+        return (int) size;
+    }
+
+    private static List<Entry> readCentralDirectory(
+            File file, FileChannel channel, AtomicLong bytesRead) throws IOException {
+        long fileSize = channel.size();
+        int tailLength = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_LENGTH);
+        if (tailLength < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            throw new ZipException("Not a zip archive: " + file);
+        }
+        ByteBuffer tail = readFully(channel, fileSize - tailLength, tailLength, file, bytesRead);
+        int endOffset = -1;
+        for (int index = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; index >= 0; index--) {
+            if (tail.getInt(index) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                endOffset = index;
+                break;
+            }
+        }
+        if (endOffset < 0) {
+            throw new ZipException("Missing end of central directory in " + file);
+        }
+        int entryCount = Short.toUnsignedInt(tail.getShort(endOffset + 10));
+        long directorySize = Integer.toUnsignedLong(tail.getInt(endOffset + 12));
+        long directoryOffset = Integer.toUnsignedLong(tail.getInt(endOffset + 16));
+        if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("Zip64 archives are not supported: " + file);
+        }
+        if (directoryOffset + directorySize > fileSize) {
+            throw new ZipException("Central directory out of bounds in " + file);
+        }
+
+        ByteBuffer directory = readFully(channel, directoryOffset, (int) directorySize, file, bytesRead);
+        List<Entry> entries = new ArrayList<>(entryCount);
+        int offset = 0;
+        for (int index = 0; index < entryCount; index++) {
+            if (offset + CENTRAL_HEADER_SIZE > directory.limit()
+                    || directory.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Corrupt central directory in " + file);
+            }
+            int flags = Short.toUnsignedInt(directory.getShort(offset + 8));
+            int nameLength = Short.toUnsignedInt(directory.getShort(offset + 28));
+            int extraLength = Short.toUnsignedInt(directory.getShort(offset + 30));
+            int commentLength = Short.toUnsignedInt(directory.getShort(offset + 32));
+            byte[] nameBytes = new byte[nameLength];
+            directory.get(offset + CENTRAL_HEADER_SIZE, nameBytes);
+            Entry entry = new Entry(
+                    new String(nameBytes, StandardCharsets.UTF_8),
+                    flags,
+                    Short.toUnsignedInt(directory.getShort(offset + 10)),
+                    Integer.toUnsignedLong(directory.getInt(offset + 16)),
+                    Integer.toUnsignedLong(directory.getInt(offset + 20)),
+                    Integer.toUnsignedLong(directory.getInt(offset + 24)),
+                    directory.getInt(offset + 38),
+                    Integer.toUnsignedLong(directory.getInt(offset + 42)));
+            if ((flags & FLAG_ENCRYPTED) != 0) {
+                throw new ZipException("Encrypted entry " + entry.name + " in " + file);
+            }
+            entries.add(entry);
+            offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /** A central directory record. */
+    static final class Entry {
+        final String name;
+        final int flags;
+        final int method;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final int externalAttributes;
+        final long localHeaderOffset;
+
+        Entry(
+                String name,
+                int flags,
+                int method,
+                long crc,
+                long compressedSize,
+                long size,
+                int externalAttributes,
+                long localHeaderOffset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.externalAttributes = externalAttributes;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.lumen.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip archive whose entries are either copied verbatim from a {@link RawZipReader} or
+ * deflated from new contents. Only the latter pay for compression.
+ *
+ * <p>Every entry is stamped with the same timestamp and written without extra fields, and new
+ * contents always use the same compression level, so the same entries written in the same order
+ * always produce the same bytes.
+ */
+final class RawZipWriter implements Closeable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int VERSION_NEEDED = 20;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+    private static final int MAX_ENTRIES = 0xFFFF;
+    private static final long MAX_OFFSET = 0xFFFFFFFFL;
+    private static final int COMPRESSION_LEVEL = Deflater.BEST_COMPRESSION;
+    // 1980-02-01 00:00:00 in MS-DOS format (years since 1980, month, day), the same instant Gradle
+    // stamps on reproducible archives.
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = (2 << 5) | 1;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private int entryCount;
+
+    private RawZipWriter(File file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    static RawZipWriter create(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        return new RawZipWriter(
+                file,
+                FileChannel.open(
+                        file.toPath(),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE));
+    }
+
+    /** Copies {@code entry} from {@code source} without decompressing it. */
+    void copyEntry(RawZipReader source, RawZipReader.Entry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        int flags = entry.flags & ~FLAG_DATA_DESCRIPTOR;
+        long offset = writeLocalHeader(name, flags, entry.method, entry.crc, entry.compressedSize, entry.size);
+        source.transferRaw(entry, channel);
+        addCentralRecord(
+                name,
+                flags,
+                entry.method,
+                entry.crc,
+                entry.compressedSize,
+                entry.size,
+                entry.externalAttributes,
+                offset);
+    }
+
+    /** Deflates {@code contents} under the name and metadata of {@code template}. */
+    void writeEntry(RawZipReader.Entry template, byte[] contents) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        byte[] compressed = deflate(contents);
+        byte[] name = template.name.getBytes(StandardCharsets.UTF_8);
+        int flags = template.flags & ~FLAG_DATA_DESCRIPTOR;
+        long offset = writeLocalHeader(
+                name, flags, RawZipReader.METHOD_DEFLATED, crc.getValue(), compressed.length, contents.length);
+        writeFully(ByteBuffer.wrap(compressed));
+        addCentralRecord(
+                name,
+                flags,
+                RawZipReader.METHOD_DEFLATED,
+                crc.getValue(),
+                compressed.length,
+                contents.length,
+                template.externalAttributes,
+                offset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long directoryOffset = channel.position();
+            byte[] directory = centralDirectory.toByteArray();
+            writeFully(ByteBuffer.wrap(directory));
+            ByteBuffer end = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            end.putShort((short) 0);
+            end.putShort((short) 0);
+            end.putShort((short) entryCount);
+            end.putShort((short) entryCount);
+            end.putInt(directory.length);
+            end.putInt((int) checkOffset(directoryOffset));
+            end.putShort((short) 0);
+            end.flip();
+            writeFully(end);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private long writeLocalHeader(
+            byte[] name, int flags, int method, long crc, long compressedSize, long size) throws IOException {
+        if (entryCount == MAX_ENTRIES) {
+            throw new ZipException("Too many entries for a non-Zip64 archive: " + file);
+        }
+        long offset = checkOffset(channel.position());
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION_NEEDED);
+        header.putShort((short) flags);
+        header.putShort((short) method);
+        header.putShort((short) DOS_TIME);
+        header.putShort((short) DOS_DATE);
+        header.putInt((int) crc);
+        header.putInt((int) checkOffset(compressedSize));
+        header.putInt((int) checkOffset(size));
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.put(name);
+        header.flip();
+        writeFully(header);
+        return offset;
+    }
+
+    private void addCentralRecord(
+            byte[] name,
+            int flags,
+            int method,
+            long crc,
+            long compressedSize,
+            long size,
+            int externalAttributes,
+            long localHeaderOffset) {
+        ByteBuffer record = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(CENTRAL_HEADER_SIGNATURE);
+        record.putShort((short) VERSION_NEEDED);
+        record.putShort((short) VERSION_NEEDED);
+        record.putShort((short) flags);
+        record.putShort((short) method);
+        record.putShort((short) DOS_TIME);
+        record.putShort((short) DOS_DATE);
+        record.putInt((int) crc);
+        record.putInt((int) compressedSize);
+        record.putInt((int) size);
+        record.putShort((short) name.length);
+        record.putShort((short) 0);
+        record.putShort((short) 0);
+        record.putShort((short) 0);
+        record.putShort((short) 0);
+        record.putInt(externalAttributes);
+        record.putInt((int) localHeaderOffset);
+        record.put(name);
+        centralDirectory.write(record.array(), 0, record.position());
+        entryCount++;
+    }
+
+    private long checkOffset(long value) throws ZipException {
+        if (value >= MAX_OFFSET) {
+            throw new ZipException("Archive exceeds the non-Zip64 size limit: " + file);
+        }
+        return value;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] deflate(byte[] contents) {
+        Deflater deflater = new Deflater(COMPRESSION_LEVEL, true);
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, contents.length / 2));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                compressed.write(chunk, 0, length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.lumen.build;
+
+/** One element a resource rule would rewrite, as found by {@link SanitizePromptHeaderTransform#auditArchive}. */
+final class ResourceFinding {
+    final String entryName;
+    /** 1-based line of the element's opening tag. */
+    final int line;
+    final String resourceName;
+    final String original;
+    final String sanitized;
+
+    ResourceFinding(String entryName, int line, String resourceName, String original, String sanitized) {
+        this.entryName = entryName;
+        this.line = line;
+        this.resourceName = resourceName;
+        this.original = original;
+        this.sanitized = sanitized;
+    }
+}
@@ -0,0 +1,154 @@
+package com.lumen.build;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gradle.api.GradleException;
+
+/**
+ * The resources {@link SanitizePromptHeaderTransform} rewrites, compiled from rule specs of the form
+ * {@code name:elementTypes:fixUps}, e.g. {@code prompt_header:string:placeholders,unicode-escapes}.
+ *
+ * <p>An element type {@code T} matches both {@code <T name="...">} and
+ * {@code <item type="T" name="...">}. All resource names share one {@link MultiPatternMatcher}, so a
+ * values file is scanned once however many rules there are.
+ */
+final class ResourceRules {
+    static final List<String> DEFAULT_SPECS =
+            List.of("prompt_header:string:" + FixUp.PLACEHOLDERS.id + "," + FixUp.UNICODE_ESCAPES.id);
+    static final ResourceRules DEFAULT = parse(DEFAULT_SPECS);
+
+    private static final Map<List<String>, ResourceRules> COMPILED = new ConcurrentHashMap<>();
+
+    /** The fix-ups a rule can apply to the text of a matched element. */
+    enum FixUp {
+        /** Rewrites {@code {name}} placeholders into positional {@code %1$s} arguments. */
+        PLACEHOLDERS("placeholders"),
+        /** Escapes capital-U and truncated unicode escape sequences, which aapt2 rejects. */
+        UNICODE_ESCAPES("unicode-escapes");
+
+        final String id;
+
+        FixUp(String id) {
+            this.id = id;
+        }
+
+        static FixUp forId(String id, String spec) {
+            for (FixUp fixUp : values()) {
+                if (fixUp.id.equals(id)) {
+                    return fixUp;
+                }
+            }
+            throw new GradleException("Unknown fix-up '" + id + "' in resource rule '" + spec + "'");
+        }
+    }
+
+    /** One resource name and what to do with it. */
+    static final class Rule {
+        final String resourceName;
+        final List<String> elementTypes;
+        final boolean fixesPlaceholders;
+        final boolean fixesUnicodeEscapes;
+
+        Rule(String resourceName, List<String> elementTypes, boolean fixesPlaceholders, boolean fixesUnicodeEscapes) {
+            this.resourceName = resourceName;
+            this.elementTypes = elementTypes;
+            this.fixesPlaceholders = fixesPlaceholders;
+            this.fixesUnicodeEscapes = fixesUnicodeEscapes;
+        }
+    }
+
+    private final List<Rule> rules;
+    private final MultiPatternMatcher names;
+    private final String fingerprint;
+
+    private ResourceRules(List<Rule> rules, MultiPatternMatcher names, String fingerprint) {
+        this.rules = rules;
+        this.names = names;
+        this.fingerprint = fingerprint;
+    }
+
+    /** Compiles {@code specs}, reusing the result for specs seen before in this daemon. */
+    static ResourceRules forSpecs(List<String> specs) {
+        if (specs.isEmpty()) {
+            return DEFAULT;
+        }
+        return COMPILED.computeIfAbsent(List.copyOf(specs), ResourceRules::parse);
+    }
+
+    static ResourceRules parse(List<String> specs) {
+        List<Rule> rules = new ArrayList<>(specs.size());
+        List<String> resourceNames = new ArrayList<>(specs.size());
+        for (String spec : specs) {
+            Rule rule = parseRule(spec);
+            if (resourceNames.contains(rule.resourceName)) {
+                throw new GradleException("Resource '" + rule.resourceName + "' has more than one rule");
+            }
+            rules.add(rule);
+            resourceNames.add(rule.resourceName);
+        }
+        return new ResourceRules(
+                Collections.unmodifiableList(rules),
+                MultiPatternMatcher.compile(resourceNames),
+                String.join(";", specs));
+    }
+
+    private static Rule parseRule(String spec) {
+        String[] parts = spec.trim().split(":", -1);
+        if (parts.length != 3 || parts[0].isEmpty() || parts[1].isEmpty() || parts[2].isEmpty()) {
+            throw new GradleException(
+                    "Resource rule '" + spec + "' must look like name:elementType[,elementType]:fixUp[,fixUp]");
+        }
+        String resourceName = parts[0].trim().toLowerCase(Locale.ROOT);
+        for (int index = 0; index < resourceName.length(); index++) {
+            char current = resourceName.charAt(index);
+            if (!(current >= 'a' && current <= 'z') && !(current >= '0' && current <= '9')
+                    && current != '_' && current != '.') {
+                throw new GradleException("Invalid resource name '" + parts[0] + "' in resource rule '" + spec + "'");
+            }
+        }
+        List<String> elementTypes = new ArrayList<>();
+        for (String elementType : parts[1].split(",")) {
+            elementTypes.add(elementType.trim().toLowerCase(Locale.ROOT));
+        }
+        boolean fixesPlaceholders = false;
+        boolean fixesUnicodeEscapes = false;
+        for (String fixUp : parts[2].split(",")) {
+            switch (FixUp.forId(fixUp.trim(), spec)) {
+                case PLACEHOLDERS:
+                    fixesPlaceholders = true;
+                    break;
+                case UNICODE_ESCAPES:
+                    fixesUnicodeEscapes = true;
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled fix-up in " + spec);
+            }
+        }
+        return new Rule(resourceName, List.copyOf(elementTypes), fixesPlaceholders, fixesUnicodeEscapes);
+    }
+
+    /** Identifies this rule set; equal for rule sets compiled from the same specs. */
+    String fingerprint() {
+        return fingerprint;
+    }
+
+    /** Whether {@code contents} mentions any rule's resource name, ignoring ASCII case. */
+    boolean mentionsAny(byte[] contents) {
+        return names.containsAny(contents);
+    }
+
+    /** Like {@link #mentionsAny}, for contents that arrive in chunks. */
+    MultiPatternMatcher.Scanner mentionScanner() {
+        return names.scanner();
+    }
+
+    /** The rule for the resource named {@code document[from, to)}, ignoring case, or {@code null}. */
+    Rule ruleFor(CharSequence document, int from, int to) {
+        int index = names.matchExact(document, from, to);
+        return index < 0 ? null : rules.get(index);
+    }
+}
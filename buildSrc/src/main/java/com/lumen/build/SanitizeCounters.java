@@ -0,0 +1,45 @@
+package com.lumen.build;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Daemon-wide tallies of how artifacts left {@link SanitizePromptHeaderTransform}. */
+final class SanitizeCounters {
+    private static final AtomicLong FAST_PATH = new AtomicLong();
+    private static final AtomicLong UNCHANGED = new AtomicLong();
+    private static final AtomicLong REWRITTEN = new AtomicLong();
+    private static final AtomicLong MEMO_HITS = new AtomicLong();
+    private static final AtomicLong MEMO_MISSES = new AtomicLong();
+
+    private SanitizeCounters() {}
+
+    static void record(SanitizePromptHeaderTransform.Outcome outcome) {
+        switch (outcome) {
+            case FAST_PATH:
+                FAST_PATH.incrementAndGet();
+                break;
+            case UNCHANGED:
+                UNCHANGED.incrementAndGet();
+                break;
+            case REWRITTEN:
+                REWRITTEN.incrementAndGet();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown outcome " + outcome);
+        }
+    }
+
+    /** For rewritten archives: whether the output came from {@link TransformMemo} rather than being written. */
+    static void recordMemo(boolean hit) {
+        (hit ? MEMO_HITS : MEMO_MISSES).incrementAndGet();
+    }
+
+    static String summary() {
+        long fastPath = FAST_PATH.get();
+        long unchanged = UNCHANGED.get();
+        long rewritten = REWRITTEN.get();
+        return "fast path " + fastPath + "/" + (fastPath + unchanged + rewritten)
+                + ", unchanged " + unchanged
+                + ", rewritten " + rewritten
+                + ", memo hits " + MEMO_HITS.get() + "/" + (MEMO_HITS.get() + MEMO_MISSES.get());
+    }
+}
@@ -0,0 +1,151 @@
+package com.lumen.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Collects {@link ArtifactMetrics} from every {@link SanitizePromptHeaderTransform} run of a build
+ * and writes them to {@code transform-metrics.json} and {@code transform-metrics.csv} when the build
+ * finishes, slowest artifact first.
+ *
+ * <p>Only transforms that actually execute report in; outputs restored from the build cache or
+ * reused from an earlier build cost nothing and are not listed. Builds that run no transform at all
+ * leave the previous report in place.
+ */
+public abstract class SanitizeMetricsService implements BuildService<SanitizeMetricsService.Parameters>, AutoCloseable {
+    static final String JSON_REPORT_NAME = "transform-metrics.json";
+    static final String CSV_REPORT_NAME = "transform-metrics.csv";
+
+    private static final Logger LOGGER = Logging.getLogger(SanitizeMetricsService.class);
+
+    private final Queue<ArtifactMetrics> metrics = new ConcurrentLinkedQueue<>();
+
+    public interface Parameters extends BuildServiceParameters {
+        DirectoryProperty getReportDirectory();
+    }
+
+    void record(ArtifactMetrics artifactMetrics) {
+        metrics.add(artifactMetrics);
+    }
+
+    @Override
+    public void close() {
+        if (metrics.isEmpty()) {
+            return;
+        }
+        List<ArtifactMetrics> sorted = sortedBySlowest(metrics);
+        File directory = getParameters().getReportDirectory().get().getAsFile();
+        try {
+            writeReports(sorted, directory);
+        } catch (IOException ex) {
+            throw new GradleException("Failed to write prompt_header transform metrics to " + directory, ex);
+        }
+        long totalNanos = 0;
+        for (ArtifactMetrics artifactMetrics : sorted) {
+            totalNanos += artifactMetrics.wallTimeNanos;
+        }
+        LOGGER.lifecycle(
+                "prompt_header transform: {} artifacts in {} ms, see {}",
+                sorted.size(),
+                TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                new File(directory, JSON_REPORT_NAME));
+    }
+
+    static List<ArtifactMetrics> sortedBySlowest(Iterable<ArtifactMetrics> metrics) {
+        List<ArtifactMetrics> sorted = new ArrayList<>();
+        metrics.forEach(sorted::add);
+        sorted.sort(Comparator.comparingLong((ArtifactMetrics artifactMetrics) -> artifactMetrics.wallTimeNanos)
+                .reversed()
+                .thenComparing(artifactMetrics -> artifactMetrics.artifact));
+        return sorted;
+    }
+
+    static void writeReports(List<ArtifactMetrics> metrics, File directory) throws IOException {
+        Path reports = Files.createDirectories(directory.toPath());
+        try (Writer json = Files.newBufferedWriter(reports.resolve(JSON_REPORT_NAME), StandardCharsets.UTF_8)) {
+            writeJson(metrics, json);
+        }
+        try (Writer csv = Files.newBufferedWriter(reports.resolve(CSV_REPORT_NAME), StandardCharsets.UTF_8)) {
+            writeCsv(metrics, csv);
+        }
+    }
+
+    static void writeJson(List<ArtifactMetrics> metrics, Writer out) throws IOException {
+        out.write("{\n  \"artifacts\": [");
+        for (int index = 0; index < metrics.size(); index++) {
+            ArtifactMetrics artifactMetrics = metrics.get(index);
+            out.write(index == 0 ? "\n" : ",\n");
+            out.write("    {\"artifact\": ");
+            writeJsonString(artifactMetrics.artifact, out);
+            out.write(", \"outcome\": \"" + artifactMetrics.outcome + "\"");
+            out.write(", \"copyThrough\": " + artifactMetrics.isCopyThrough());
+            out.write(", \"wallTimeMillis\": " + formatMillis(artifactMetrics.wallTimeNanos));
+            out.write(", \"bytesRead\": " + artifactMetrics.bytesRead);
+            out.write(", \"bytesWritten\": " + artifactMetrics.bytesWritten);
+            out.write(", \"valuesFilesScanned\": " + artifactMetrics.valuesFilesScanned);
+            out.write(", \"stringsPatched\": " + artifactMetrics.stringsPatched);
+            out.write(", \"memoized\": " + artifactMetrics.memoized + "}");
+        }
+        out.write(metrics.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+    }
+
+    static void writeCsv(List<ArtifactMetrics> metrics, Writer out) throws IOException {
+        out.write("artifact,outcome,copy_through,wall_time_ms,bytes_read,bytes_written,"
+                + "values_files_scanned,strings_patched,memoized\n");
+        for (ArtifactMetrics artifactMetrics : metrics) {
+            out.write(csvField(artifactMetrics.artifact));
+            out.write("," + artifactMetrics.outcome);
+            out.write("," + artifactMetrics.isCopyThrough());
+            out.write("," + formatMillis(artifactMetrics.wallTimeNanos));
+            out.write("," + artifactMetrics.bytesRead);
+            out.write("," + artifactMetrics.bytesWritten);
+            out.write("," + artifactMetrics.valuesFilesScanned);
+            out.write("," + artifactMetrics.stringsPatched);
+            out.write("," + artifactMetrics.memoized + "\n");
+        }
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void writeJsonString(String value, Writer out) throws IOException {
+        out.write('"');
+        for (int index = 0; index < value.length(); index++) {
+            char current = value.charAt(index);
+            if (current == '"' || current == '\\') {
+                out.write('\\');
+                out.write(current);
+            } else if (current < 0x20) {
+                out.write(String.format(Locale.ROOT, "\\u%04x", (int) current));
+            } else {
+                out.write(current);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -1,133 +1,658 @@
 package com.lumen.build;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.UncheckedIOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.transform.CacheableTransform;
 import org.gradle.api.artifacts.transform.InputArtifact;
 import org.gradle.api.artifacts.transform.TransformAction;
 import org.gradle.api.artifacts.transform.TransformOutputs;
 import org.gradle.api.artifacts.transform.TransformParameters;
 import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 
-public abstract class SanitizePromptHeaderTransform implements TransformAction<TransformParameters.None> {
-    private static final String SANITIZED_SUFFIX = "-sanitized-v9";
-    private static final Pattern STRING_WITH_NAME_PATTERN =
-            Pattern.compile(
-                    "(<([a-zA-Z0-9_:-]+)[^>]*name\\s*=\\s*(['\"])prompt_header\\3[^>]*>)(.*?)(</\\2>)",
-                    Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+@CacheableTransform
+public abstract class SanitizePromptHeaderTransform implements TransformAction<SanitizePromptHeaderTransform.Parameters> {
+    /**
+     * Version of the rewrite rules. Bump it whenever the sanitized bytes for an unchanged input would
+     * differ, so previously cached outputs are no longer reused.
+     */
+    public static final int RULES_VERSION = 10;
+
+    /** The rule set used when {@link Parameters#getRules()} is empty: the prompt_header fix-ups. */
+    public static final List<String> DEFAULT_RULES = ResourceRules.DEFAULT_SPECS;
+
+    private static final String SANITIZED_SUFFIX = "-sanitized";
     private static final Pattern PLACEHOLDER_PATTERN =
             Pattern.compile("\\\\?" + "\\{" + "[^}]*" + "\\}");
     private static final String INVALID_ESCAPE_BACKSLASH = "\\\\";
+    private static final Logger LOGGER = Logging.getLogger(SanitizePromptHeaderTransform.class);
+    private static final long PARALLEL_THRESHOLD_BYTES = 256 * 1024;
+
+    private static ForkJoinPool valuesPool;
+
+    public interface Parameters extends TransformParameters {
+        /** Part of the build cache key; set it to {@link #RULES_VERSION}. */
+        @Input
+        Property<Integer> getRulesVersion();
+
+        /**
+         * Resources to rewrite, one {@code name:elementType[,elementType]:fixUp[,fixUp]} spec each, e.g.
+         * {@code prompt_header:string:placeholders,unicode-escapes}. Fix-ups are {@code placeholders}
+         * and {@code unicode-escapes}. Empty means {@link #DEFAULT_RULES}.
+         */
+        @Input
+        ListProperty<String> getRules();
+
+        /**
+         * Upper bound on threads sanitizing values files, shared by every running transform. Wire it
+         * to Gradle's max worker count; defaults to the number of processors like Gradle does.
+         */
+        @Internal
+        Property<Integer> getMaxParallelism();
+
+        /** Receives the cost of every artifact this transform processes; optional. */
+        @Internal
+        Property<SanitizeMetricsService> getMetricsService();
+
+        /**
+         * How many rewritten archives the daemon remembers by input content hash, so identical inputs
+         * are only rewritten once; 0 turns the memo off. Defaults to {@value TransformMemo#DEFAULT_MAX_ENTRIES}.
+         */
+        @Internal
+        Property<Integer> getMemoEntries();
+
+        /**
+         * Heap the transform may spend on inflated values files at once, split evenly across
+         * {@link #getMaxParallelism()}. Entries larger than their share are scanned as a stream and
+         * only inflated into memory when they mention a ruled resource. Defaults to an eighth of the
+         * daemon's max heap.
+         */
+        @Internal
+        Property<Long> getMaxHeapBytes();
+    }
+
+    /** How an artifact left the transform. */
+    enum Outcome {
+        /** No values entry mentions a ruled resource name; decided from the central directory and a byte scan. */
+        FAST_PATH,
+        /** A values entry mentions a ruled resource name but nothing needed rewriting. */
+        UNCHANGED,
+        /** At least one values entry was rewritten into a new archive. */
+        REWRITTEN
+    }
+
+    /** Observes the elements a values document rewrite changes. */
+    interface RewriteListener {
+        RewriteListener NONE = (resourceName, offset, original, sanitized) -> { };
+
+        /** {@code offset} is where the element's opening tag starts in the original document. */
+        void rewritten(String resourceName, int offset, String original, String sanitized);
+    }
+
+    /** Where a rewritten archive goes; only consulted once a values entry mentions a ruled name. */
+    private interface RewriteTarget {
+        /**
+         * Provides an output remembered for identical input, before any values entry is rewritten,
+         * and returns whether it did; the archive is then not sanitized again.
+         */
+        boolean reuse() throws IOException;
+
+        /** The file to write the rewritten archive to. */
+        File open() throws IOException;
+    }
 
     @InputArtifact
+    @PathSensitive(PathSensitivity.NAME_ONLY)
     public abstract Provider<FileSystemLocation> getInputArtifact();
 
     @Override
     public void transform(TransformOutputs outputs) {
         File input = getInputArtifact().get().getAsFile();
-        String outputName;
-        if (input.getName().endsWith(".aar")) {
-            outputName =
-                    input.getName().substring(0, input.getName().length() - 4) + SANITIZED_SUFFIX + ".aar";
-        } else {
-            outputName = input.getName() + SANITIZED_SUFFIX;
-        }
-        File output = outputs.file(outputName);
-        File tempDir;
+        int maxParallelism = getParameters().getMaxParallelism().getOrElse(Runtime.getRuntime().availableProcessors());
+        long maxHeapBytes = getParameters().getMaxHeapBytes().getOrElse(Runtime.getRuntime().maxMemory() / 8);
+        ResourceRules rules = ResourceRules.forSpecs(getParameters().getRules().getOrElse(List.of()));
+        TransformMemo memo = TransformMemo.shared(
+                getParameters().getMemoEntries().getOrElse(TransformMemo.DEFAULT_MAX_ENTRIES));
+        ArtifactMetrics metrics = new ArtifactMetrics(input.getName());
+        long start = System.nanoTime();
         try {
-            tempDir = Files.createTempDirectory("prompt-header-" + input.getName()).toFile();
-        } catch (IOException e) {
-            throw new GradleException("Unable to create temp directory for " + input.getAbsolutePath(), e);
+            Outcome outcome = sanitizeArchive(
+                    input,
+                    () -> outputs.file(outputNameFor(input)),
+                    memo,
+                    getParameters().getRulesVersion().get() + ";" + rules.fingerprint(),
+                    maxParallelism,
+                    maxHeapBytes,
+                    rules,
+                    metrics);
+            if (outcome != Outcome.REWRITTEN) {
+                outputs.file(input);
+            }
+            metrics.wallTimeNanos = System.nanoTime() - start;
+            if (getParameters().getMetricsService().isPresent()) {
+                getParameters().getMetricsService().get().record(metrics);
+            }
+            SanitizeCounters.record(outcome);
+            if (outcome == Outcome.REWRITTEN && memo.isEnabled()) {
+                SanitizeCounters.recordMemo(metrics.memoized);
+            }
+            LOGGER.info("prompt_header sanitization of {}: {} ({})", input.getName(), outcome, SanitizeCounters.summary());
+        } catch (IOException ex) {
+            throw new GradleException("Failed to sanitize " + input.getAbsolutePath(), ex);
+        }
+    }
+
+    private static String outputNameFor(File input) {
+        String name = input.getName();
+        if (name.endsWith(".aar")) {
+            return name.substring(0, name.length() - 4) + SANITIZED_SUFFIX + ".aar";
         }
+        return name + SANITIZED_SUFFIX;
+    }
+
+    /**
+     * Streams {@code input} into the file produced by {@code output}, rewriting only the values XML
+     * entries that need patching. Every other entry keeps its original compressed bytes and CRC, and
+     * the output is only requested when at least one entry changed, so untouched archives can be
+     * handed through as-is.
+     */
+    static Outcome sanitizeArchive(File input, Supplier<File> output, int maxParallelism) throws IOException {
+        return sanitizeArchive(
+                input,
+                output,
+                maxParallelism,
+                Long.MAX_VALUE,
+                ResourceRules.DEFAULT,
+                new ArtifactMetrics(input.getName()));
+    }
+
+    /**
+     * Like {@link #sanitizeArchive(File, Supplier, int)} with {@code rules} instead of the default
+     * ones and at most {@code maxHeapBytes} of inflated values files in memory at once, also filling
+     * in everything but the wall time of {@code metrics}.
+     */
+    static Outcome sanitizeArchive(
+            File input,
+            Supplier<File> output,
+            int maxParallelism,
+            long maxHeapBytes,
+            ResourceRules rules,
+            ArtifactMetrics metrics) throws IOException {
+        return sanitizeArchiveTo(input, writeTo(output), maxParallelism, maxHeapBytes, rules, metrics);
+    }
+
+    /**
+     * Like {@link #sanitizeArchive(File, Supplier, int, long, ResourceRules, ArtifactMetrics)}, but
+     * reuses a rewritten archive {@code memo} remembers for identical input and rules. The memo is
+     * consulted right after the scan for ruled names, before any values entry is rewritten, so a hit
+     * costs that scan and a hash. The input is never hashed on the fast path, nor when the memo is
+     * off.
+     */
+    static Outcome sanitizeArchive(
+            File input,
+            Supplier<File> output,
+            TransformMemo memo,
+            String rulesKey,
+            int maxParallelism,
+            long maxHeapBytes,
+            ResourceRules rules,
+            ArtifactMetrics metrics) throws IOException {
+        if (!memo.isEnabled()) {
+            return sanitizeArchiveTo(input, writeTo(output), maxParallelism, maxHeapBytes, rules, metrics);
+        }
+        String[] memoKey = new String[1];
+        File[] written = new File[1];
+        Outcome outcome = sanitizeArchiveTo(input, new RewriteTarget() {
+            @Override
+            public boolean reuse() throws IOException {
+                memoKey[0] = memo.keyFor(input, rulesKey);
+                TransformMemo.Result remembered = memo.lookup(memoKey[0]);
+                if (remembered == null) {
+                    return false;
+                }
+                File target = output.get();
+                TransformMemo.materialize(remembered.output, target);
+                metrics.memoized = true;
+                metrics.bytesWritten = target.length();
+                return true;
+            }
+
+            @Override
+            public File open() {
+                written[0] = output.get();
+                return written[0];
+            }
+        }, maxParallelism, maxHeapBytes, rules, metrics);
+        if (written[0] != null) {
+            memo.remember(memoKey[0], new TransformMemo.Result(written[0]));
+        }
+        return outcome;
+    }
 
+    private static RewriteTarget writeTo(Supplier<File> output) {
+        return new RewriteTarget() {
+            @Override
+            public boolean reuse() {
+                return false;
+            }
+
+            @Override
+            public File open() {
+                return output.get();
+            }
+        };
+    }
+
+    private static Outcome sanitizeArchiveTo(
+            File input,
+            RewriteTarget output,
+            int maxParallelism,
+            long maxHeapBytes,
+            ResourceRules rules,
+            ArtifactMetrics metrics) throws IOException {
+        try (RawZipReader archive = RawZipReader.open(input)) {
+            Outcome outcome = sanitizeArchive(archive, output, maxParallelism, maxHeapBytes, rules, metrics);
+            metrics.outcome = outcome;
+            metrics.bytesRead = archive.bytesRead();
+            return outcome;
+        }
+    }
+
+    private static Outcome sanitizeArchive(
+            RawZipReader archive,
+            RewriteTarget output,
+            int maxParallelism,
+            long maxHeapBytes,
+            ResourceRules rules,
+            ArtifactMetrics metrics) throws IOException {
+        List<RawZipReader.Entry> valuesEntries = listValuesEntries(archive);
+        metrics.valuesFilesScanned = valuesEntries.size();
+        List<byte[]> contents = forEachValuesEntry(valuesEntries, maxParallelism, maxHeapBytes,
+                (entry, maxEntryBytes) -> readIfMentioningRule(archive, entry, rules, maxEntryBytes));
+        List<RawZipReader.Entry> mentioning = new ArrayList<>();
+        Map<String, byte[]> mentioningContents = new HashMap<>();
+        for (int index = 0; index < valuesEntries.size(); index++) {
+            if (contents.get(index) != null) {
+                mentioning.add(valuesEntries.get(index));
+                mentioningContents.put(valuesEntries.get(index).name, contents.get(index));
+            }
+        }
+        if (mentioning.isEmpty()) {
+            return Outcome.FAST_PATH;
+        }
+        if (output.reuse()) {
+            return Outcome.REWRITTEN;
+        }
+        List<ValuesEntryResult> results = forEachValuesEntry(mentioning, maxParallelism, maxHeapBytes,
+                (entry, maxEntryBytes) -> rewriteValuesEntry(mentioningContents.get(entry.name), rules));
+        Map<String, byte[]> patchedEntries = new LinkedHashMap<>();
+        for (int index = 0; index < mentioning.size(); index++) {
+            ValuesEntryResult result = results.get(index);
+            metrics.stringsPatched += result.patchedStrings;
+            if (result.patched != null) {
+                patchedEntries.put(mentioning.get(index).name, result.patched);
+            }
+        }
+        if (patchedEntries.isEmpty()) {
+            return Outcome.UNCHANGED;
+        }
+        File target = output.open();
+        writePatchedArchive(archive, patchedEntries, target);
+        metrics.bytesWritten = target.length();
+        return Outcome.REWRITTEN;
+    }
+
+    /**
+     * Read-only counterpart of {@link #sanitizeArchive}: lists every element {@code rules} would
+     * rewrite in {@code input}, by entry name and then position, without writing anything.
+     */
+    static List<ResourceFinding> auditArchive(File input, ResourceRules rules) throws IOException {
+        List<ResourceFinding> findings = new ArrayList<>();
+        try (RawZipReader archive = RawZipReader.open(input)) {
+            List<RawZipReader.Entry> valuesEntries = listValuesEntries(archive);
+            valuesEntries.sort(Comparator.comparing(entry -> entry.name));
+            for (RawZipReader.Entry entry : valuesEntries) {
+                byte[] contents = archive.read(entry);
+                if (!rules.mentionsAny(contents)) {
+                    continue;
+                }
+                String document = new String(contents, StandardCharsets.UTF_8);
+                sanitizeValuesDocument(document, rules, (resourceName, offset, original, sanitized) ->
+                        findings.add(new ResourceFinding(
+                                entry.name, lineOf(document, offset), resourceName, original, sanitized)));
+            }
+        }
+        return findings;
+    }
+
+    private static int lineOf(String document, int offset) {
+        int line = 1;
+        int index = document.indexOf('\n');
+        while (index >= 0 && index < offset) {
+            line++;
+            index = document.indexOf('\n', index + 1);
+        }
+        return line;
+    }
+
+    private static List<RawZipReader.Entry> listValuesEntries(RawZipReader archive) {
+        List<RawZipReader.Entry> valuesEntries = new ArrayList<>();
+        for (RawZipReader.Entry entry : archive.entries()) {
+            if (!entry.isDirectory() && isValuesXmlEntry(entry.name)) {
+                valuesEntries.add(entry);
+            }
+        }
+        return valuesEntries;
+    }
+
+    /** Work on a single values entry, kept within {@code maxEntryBytes} of heap. */
+    private interface ValuesEntryTask<T> {
+        T run(RawZipReader.Entry entry, long maxEntryBytes) throws IOException;
+    }
+
+    /**
+     * Runs {@code task} for each of {@code valuesEntries}, returning one result per entry in the same
+     * order. Archives with many large locale files are spread over the shared pool; small ones stay
+     * on the calling worker thread since forking would cost more than it saves.
+     */
+    private static <T> List<T> forEachValuesEntry(
+            List<RawZipReader.Entry> valuesEntries,
+            int maxParallelism,
+            long maxHeapBytes,
+            ValuesEntryTask<T> task) throws IOException {
+        long totalBytes = 0;
+        for (RawZipReader.Entry entry : valuesEntries) {
+            totalBytes += entry.size;
+        }
+        if (maxParallelism <= 1 || valuesEntries.size() < 2 || totalBytes < PARALLEL_THRESHOLD_BYTES) {
+            List<T> results = new ArrayList<>(valuesEntries.size());
+            for (RawZipReader.Entry entry : valuesEntries) {
+                results.add(task.run(entry, maxHeapBytes));
+            }
+            return results;
+        }
+        long maxEntryBytes = maxHeapBytes / maxParallelism;
+        List<Callable<T>> tasks = new ArrayList<>(valuesEntries.size());
+        for (RawZipReader.Entry entry : valuesEntries) {
+            tasks.add(() -> task.run(entry, maxEntryBytes));
+        }
+        List<T> results = new ArrayList<>(valuesEntries.size());
         try {
-            unzipTo(input, tempDir);
-            boolean patched = replaceInvalidPromptHeaderStrings(tempDir);
-            if (patched) {
-                zipFrom(tempDir, output);
-            } else {
-                copyFile(input, output);
+            for (Future<T> future : invokeShared(tasks, maxParallelism)) {
+                results.add(future.get());
             }
-        } catch (IOException ex) {
-            throw new GradleException("Failed to sanitize " + input.getAbsolutePath(), ex);
-        } finally {
-            try {
-                deleteRecursively(tempDir.toPath());
-            } catch (IOException ignored) {
-                // best effort cleanup
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sanitizing values files");
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            throw new GradleException("Failed to sanitize values files", cause);
         }
+        return results;
     }
 
-    private static void copyFile(File input, File output) throws IOException {
-        output.getParentFile().mkdirs();
-        Files.copy(input.toPath(), output.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Inflates one values entry and keeps its bytes only when they mention one of the ruled resource
+     * names, so most archives are settled without any string work; returns {@code null} otherwise.
+     * Entries larger than {@code maxEntryBytes} are first scanned as a stream and only inflated into
+     * memory on a mention.
+     */
+    private static byte[] readIfMentioningRule(
+            RawZipReader archive, RawZipReader.Entry entry, ResourceRules rules, long maxEntryBytes)
+            throws IOException {
+        if (entry.size > maxEntryBytes) {
+            MultiPatternMatcher.Scanner scanner = rules.mentionScanner();
+            if (!archive.scan(entry, (chunk, length) -> scanner.feed(chunk, 0, length))) {
+                return null;
+            }
+        }
+        byte[] contents = archive.read(entry);
+        return rules.mentionsAny(contents) ? contents : null;
     }
 
-    private static boolean replaceInvalidPromptHeaderStrings(File root) throws IOException {
-        if (root == null || !root.exists()) {
-            return false;
+    /** Decodes and rewrites one values entry that {@link #readIfMentioningRule} kept. */
+    private static ValuesEntryResult rewriteValuesEntry(byte[] contents, ResourceRules rules) {
+        int[] patchedStrings = new int[1];
+        String sanitized = sanitizeValuesDocument(
+                new String(contents, StandardCharsets.UTF_8),
+                rules,
+                (resourceName, offset, original, replacement) -> patchedStrings[0]++);
+        if (sanitized == null) {
+            return ValuesEntryResult.UNCHANGED;
         }
-        boolean patchedAny = false;
-        List<File> valuesFiles = findValuesXmlFiles(root);
-        for (File file : valuesFiles) {
-            boolean filePatched = sanitizePromptHeaderFile(file);
-            patchedAny = patchedAny || filePatched;
+        return new ValuesEntryResult(sanitized.getBytes(StandardCharsets.UTF_8), patchedStrings[0]);
+    }
+
+    /**
+     * Runs {@code tasks} on the shared pool. A transform asking for another parallelism may shut the
+     * pool down between looking it up and submitting to it; the tasks only read the archive, so they
+     * are then simply submitted again to its replacement.
+     */
+    private static <T> List<Future<T>> invokeShared(List<Callable<T>> tasks, int parallelism)
+            throws InterruptedException {
+        while (true) {
+            ForkJoinPool pool = sharedPool(parallelism);
+            try {
+                return pool.invokeAll(tasks);
+            } catch (RejectedExecutionException exception) {
+                if (!pool.isShutdown()) {
+                    throw exception;
+                }
+            }
+        }
+    }
+
+    /**
+     * One pool for the whole daemon, so concurrently running transforms share {@code parallelism}
+     * threads rather than each adding their own on top of Gradle's workers. When the parallelism
+     * changes, the old pool is shut down: it finishes the work already submitted to it and then lets
+     * its threads exit instead of lingering in the daemon.
+     */
+    static synchronized ForkJoinPool sharedPool(int parallelism) {
+        if (valuesPool == null || valuesPool.getParallelism() != parallelism) {
+            if (valuesPool != null) {
+                valuesPool.shutdown();
+            }
+            valuesPool = new ForkJoinPool(parallelism);
+        }
+        return valuesPool;
+    }
+
+    /** Entries are written sorted by name so the output does not depend on the input's entry order. */
+    private static void writePatchedArchive(
+            RawZipReader archive, Map<String, byte[]> patchedEntries, File output) throws IOException {
+        List<RawZipReader.Entry> sortedEntries = new ArrayList<>(archive.entries());
+        sortedEntries.sort(Comparator.comparing(entry -> entry.name));
+        try (RawZipWriter writer = RawZipWriter.create(output)) {
+            for (RawZipReader.Entry entry : sortedEntries) {
+                byte[] patched = patchedEntries.get(entry.name);
+                if (patched != null) {
+                    writer.writeEntry(entry, patched);
+                } else {
+                    writer.copyEntry(archive, entry);
+                }
+            }
         }
-        return patchedAny;
     }
 
     private static boolean sanitizePromptHeaderFile(File file) throws IOException {
         String original = Files.readString(file.toPath(), StandardCharsets.UTF_8);
-        Matcher matcher = STRING_WITH_NAME_PATTERN.matcher(original);
-        StringBuffer buffer = new StringBuffer(original.length());
-        boolean modified = false;
-        while (matcher.find()) {
-            String opening = matcher.group(1);
-            String content = matcher.group(4);
-            String closing = matcher.group(5);
-            if (!isStringElement(opening, matcher.group(2))) {
+        String sanitized = sanitizePromptHeaderContent(original);
+        if (sanitized == null) {
+            return false;
+        }
+        Files.writeString(file.toPath(), sanitized, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    /**
+     * Returns the sanitized document, or {@code null} when no prompt_header string needed changes.
+     *
+     * <p>This is a single left-to-right scan over the tags of the document: it only looks at the
+     * attributes of each opening tag, and only copies the document once the first string actually
+     * changes.
+     */
+    static String sanitizePromptHeaderContent(String document) {
+        return sanitizeValuesDocument(document, ResourceRules.DEFAULT, RewriteListener.NONE);
+    }
+
+    /** Like {@link #sanitizePromptHeaderContent} for any rule set. */
+    static String sanitizeValuesDocument(String document, ResourceRules rules) {
+        return sanitizeValuesDocument(document, rules, RewriteListener.NONE);
+    }
+
+    /** Also reports every rewritten element to {@code listener}, in document order. */
+    static String sanitizeValuesDocument(String document, ResourceRules rules, RewriteListener listener) {
+        int length = document.length();
+        StringBuilder sanitizedDocument = null;
+        int copied = 0;
+        int cursor = 0;
+        while (cursor < length) {
+            int tagStart = document.indexOf('<', cursor);
+            if (tagStart < 0) {
+                break;
+            }
+            int nameStart = tagStart + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < length && isTagNameChar(document.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            if (nameEnd == nameStart) {
+                // closing tags, comments, processing instructions
+                cursor = nameStart;
+                continue;
+            }
+            int tagEnd = document.indexOf('>', nameEnd);
+            if (tagEnd < 0) {
+                break;
+            }
+            cursor = tagEnd + 1;
+            if (document.charAt(tagEnd - 1) == '/') {
+                continue;
+            }
+            long resourceName = attributeValue(document, nameEnd, tagEnd, "name");
+            ResourceRules.Rule rule = resourceName < 0
+                    ? null
+                    : rules.ruleFor(document, (int) (resourceName >>> 32), (int) resourceName);
+            if (rule == null) {
                 continue;
             }
-            String sanitized = sanitizePlaceholders(content);
-            String unicodeSafe = escapeInvalidUnicodeEscapes(sanitized);
-            if (!unicodeSafe.equals(content)) {
-                modified = true;
+            int closeStart = indexOfClosingTag(document, tagEnd + 1, nameStart, nameEnd);
+            if (closeStart < 0) {
+                continue;
+            }
+            cursor = closeStart + 3 + (nameEnd - nameStart);
+            if (!isElementOfType(document, nameStart, nameEnd, tagEnd, rule.elementTypes)) {
+                continue;
             }
-            matcher.appendReplacement(
-                    buffer, Matcher.quoteReplacement(opening + unicodeSafe + closing));
+            String content = document.substring(tagEnd + 1, closeStart);
+            String sanitized = sanitizeStringValue(content, rule.fixesPlaceholders, rule.fixesUnicodeEscapes);
+            if (sanitized == content) {
+                continue;
+            }
+            if (sanitizedDocument == null) {
+                sanitizedDocument = new StringBuilder(length + 16);
+            }
+            sanitizedDocument.append(document, copied, tagEnd + 1).append(sanitized);
+            copied = closeStart;
+            listener.rewritten(
+                    document.substring((int) (resourceName >>> 32), (int) resourceName), tagStart, content, sanitized);
         }
-        matcher.appendTail(buffer);
-        if (!modified) {
-            return false;
+        if (sanitizedDocument == null) {
+            return null;
         }
-        Files.writeString(file.toPath(), buffer.toString(), StandardCharsets.UTF_8);
-        return true;
+        return sanitizedDocument.append(document, copied, length).toString();
+    }
+
+    /**
+     * Applies {@link #sanitizePlaceholders} and {@link #escapeInvalidUnicodeEscapes} in one pass.
+     * Returns {@code content} itself when nothing changed.
+     */
+    static String sanitizeStringValue(String content) {
+        return sanitizeStringValue(content, true, true);
     }
 
-    private static String sanitizePlaceholders(String content) {
+    private static String sanitizeStringValue(String content, boolean placeholders, boolean unicodeEscapes) {
+        int length = content.length();
+        int lastClosingBrace = placeholders ? content.lastIndexOf('}') : -1;
+        StringBuilder sanitized = null;
+        Map<String, Integer> placeholderOrder = null;
+        int index = 0;
+        while (index < length) {
+            char current = content.charAt(index);
+            int braceIndex = current == '{'
+                    ? index
+                    : current == '\\' && index + 1 < length && content.charAt(index + 1) == '{' ? index + 1 : -1;
+            if (braceIndex >= 0 && braceIndex < lastClosingBrace) {
+                int placeholderEnd = content.indexOf('}', braceIndex + 1) + 1;
+                if (placeholderOrder == null) {
+                    placeholderOrder = new LinkedHashMap<>();
+                }
+                String placeholderKey = canonicalizePlaceholderKey(content, index, placeholderEnd);
+                Integer assignedIndex = placeholderOrder.get(placeholderKey);
+                if (assignedIndex == null) {
+                    assignedIndex = placeholderOrder.size() + 1;
+                    placeholderOrder.put(placeholderKey, assignedIndex);
+                }
+                sanitized = startCopy(sanitized, content, index);
+                sanitized.append('%').append(assignedIndex.intValue()).append("$s");
+                index = placeholderEnd;
+                continue;
+            }
+            if (unicodeEscapes && isInvalidUnicodeEscape(content, index)) {
+                sanitized = startCopy(sanitized, content, index);
+                sanitized.append(INVALID_ESCAPE_BACKSLASH);
+                index++;
+                continue;
+            }
+            if (sanitized != null) {
+                sanitized.append(current);
+            }
+            index++;
+        }
+        return sanitized == null ? content : sanitized.toString();
+    }
+
+    private static StringBuilder startCopy(StringBuilder sanitized, String content, int index) {
+        if (sanitized != null) {
+            return sanitized;
+        }
+        return new StringBuilder(content.length() + 8).append(content, 0, index);
+    }
+
+    static String sanitizePlaceholders(String content) {
         if (content == null || content.isEmpty()) {
             return content;
         }
@@ -138,7 +663,7 @@ public abstract class SanitizePromptHeaderTransform implements TransformAction<T
         int nextIndex = 1;
         while (placeholderMatcher.find()) {
             String placeholder = placeholderMatcher.group();
-            String placeholderKey = canonicalizePlaceholderKey(placeholder);
+            String placeholderKey = canonicalizePlaceholderKey(placeholder, 0, placeholder.length());
             Integer assignedIndex = placeholderOrder.get(placeholderKey);
             if (assignedIndex == null) {
                 assignedIndex = nextIndex++;
@@ -156,7 +681,7 @@ public abstract class SanitizePromptHeaderTransform implements TransformAction<T
         return sanitizedBuffer.toString();
     }
 
-    private static String escapeInvalidUnicodeEscapes(String content) {
+    static String escapeInvalidUnicodeEscapes(String content) {
         if (content == null || content.isEmpty()) {
             return content;
         }
@@ -165,33 +690,14 @@ public abstract class SanitizePromptHeaderTransform implements TransformAction<T
         int index = 0;
         while (index < length) {
             char current = content.charAt(index);
-            if (current == '\\' && index + 1 < length) {
-                char next = content.charAt(index + 1);
-                boolean invalidEscape = false;
-                if (next == 'U') {
-                    invalidEscape = true;
-                } else if (next == 'u') {
-                    int hexDigits = 0;
-                    int lookahead = index + 2;
-                    while (lookahead < length
-                            && hexDigits < 4
-                            && isHexDigit(content.charAt(lookahead))) {
-                        hexDigits++;
-                        lookahead++;
-                    }
-                    if (hexDigits < 4) {
-                        invalidEscape = true;
-                    }
-                }
-                if (invalidEscape) {
-                    if (sanitized == null) {
-                        sanitized = new StringBuilder(length + 4);
-                        sanitized.append(content, 0, index);
-                    }
-                    sanitized.append(INVALID_ESCAPE_BACKSLASH);
-                    index++;
-                    continue;
+            if (isInvalidUnicodeEscape(content, index)) {
+                if (sanitized == null) {
+                    sanitized = new StringBuilder(length + 4);
+                    sanitized.append(content, 0, index);
                 }
+                sanitized.append(INVALID_ESCAPE_BACKSLASH);
+                index++;
+                continue;
             }
             if (sanitized != null) {
                 sanitized.append(current);
@@ -204,33 +710,140 @@ public abstract class SanitizePromptHeaderTransform implements TransformAction<T
         return sanitized.toString();
     }
 
+    private static boolean isInvalidUnicodeEscape(String content, int index) {
+        int length = content.length();
+        if (content.charAt(index) != '\\' || index + 1 >= length) {
+            return false;
+        }
+        char next = content.charAt(index + 1);
+        if (next == 'U') {
+            return true;
+        }
+        if (next != 'u') {
+            return false;
+        }
+        int hexDigits = 0;
+        int lookahead = index + 2;
+        while (lookahead < length
+                && hexDigits < 4
+                && isHexDigit(content.charAt(lookahead))) {
+            hexDigits++;
+            lookahead++;
+        }
+        return hexDigits < 4;
+    }
+
     private static boolean isHexDigit(char value) {
         return (value >= '0' && value <= '9')
                 || (value >= 'a' && value <= 'f')
                 || (value >= 'A' && value <= 'F');
     }
 
-    private static boolean isStringElement(String openingTag, String tagName) {
-        if (tagName == null) {
-            return false;
+    private static boolean isTagNameChar(char value) {
+        return (value >= 'a' && value <= 'z')
+                || (value >= 'A' && value <= 'Z')
+                || (value >= '0' && value <= '9')
+                || value == '_'
+                || value == ':'
+                || value == '-';
+    }
+
+    /** Whether the tag is {@code <type ...>} or {@code <item type="type" ...>} for one of {@code types}. */
+    private static boolean isElementOfType(
+            String document, int nameStart, int nameEnd, int tagEnd, List<String> types) {
+        int nameLength = nameEnd - nameStart;
+        boolean item = nameLength == 4 && document.regionMatches(true, nameStart, "item", 0, 4);
+        long itemType = item ? attributeValue(document, nameEnd, tagEnd, "type") : -1;
+        for (String type : types) {
+            if (nameLength == type.length() && document.regionMatches(true, nameStart, type, 0, nameLength)) {
+                return true;
+            }
+            if (itemType >= 0 && regionEqualsIgnoreCase(document, itemType, type)) {
+                return true;
+            }
         }
-        if ("string".equalsIgnoreCase(tagName)) {
-            return true;
+        return false;
+    }
+
+    private static boolean regionEqualsIgnoreCase(String document, long range, String expected) {
+        int start = (int) (range >>> 32);
+        int end = (int) range;
+        return end - start == expected.length() && document.regionMatches(true, start, expected, 0, end - start);
+    }
+
+    /** Returns where {@code </tagName>} starts at or after {@code from}, ignoring case, or -1. */
+    private static int indexOfClosingTag(String document, int from, int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        int candidate = document.indexOf("</", from);
+        while (candidate >= 0) {
+            int afterName = candidate + 2 + nameLength;
+            if (afterName < document.length()
+                    && document.charAt(afterName) == '>'
+                    && document.regionMatches(true, candidate + 2, document, nameStart, nameLength)) {
+                return candidate;
+            }
+            candidate = document.indexOf("</", candidate + 2);
         }
-        if (!"item".equalsIgnoreCase(tagName)) {
-            return false;
+        return -1;
+    }
+
+    /**
+     * Finds the quoted value of {@code attribute} (either quote style, name ignoring case) among the
+     * attributes in {@code [from, to)} of an opening tag. Returns the value's start and end packed as
+     * {@code start << 32 | end}, or -1 when the attribute is missing.
+     */
+    private static long attributeValue(String document, int from, int to, String attribute) {
+        int index = from;
+        while (index < to) {
+            char current = document.charAt(index);
+            if (Character.isWhitespace(current) || current == '/') {
+                index++;
+                continue;
+            }
+            int attributeStart = index;
+            while (index < to
+                    && document.charAt(index) != '='
+                    && !Character.isWhitespace(document.charAt(index))) {
+                index++;
+            }
+            int attributeEnd = index;
+            while (index < to && Character.isWhitespace(document.charAt(index))) {
+                index++;
+            }
+            if (index >= to || document.charAt(index) != '=') {
+                continue;
+            }
+            index++;
+            while (index < to && Character.isWhitespace(document.charAt(index))) {
+                index++;
+            }
+            if (index >= to) {
+                return -1;
+            }
+            char quote = document.charAt(index);
+            if (quote != '"' && quote != '\'') {
+                continue;
+            }
+            int valueStart = index + 1;
+            int valueEnd = document.indexOf(quote, valueStart);
+            if (valueEnd < 0 || valueEnd >= to) {
+                return -1;
+            }
+            if (attributeEnd - attributeStart == attribute.length()
+                    && document.regionMatches(true, attributeStart, attribute, 0, attribute.length())) {
+                return ((long) valueStart << 32) | valueEnd;
+            }
+            index = valueEnd + 1;
         }
-        String lowerOpening = openingTag.toLowerCase();
-        return lowerOpening.contains("type=\"string\"")
-                || lowerOpening.contains("type='string'");
+        return -1;
     }
 
-    private static String canonicalizePlaceholderKey(String placeholder) {
-        if (placeholder == null || placeholder.isEmpty()) {
+    private static String canonicalizePlaceholderKey(String placeholder, int from, int to) {
+        int start = from;
+        int end = to;
+        if (start >= end) {
             return "";
         }
-        int start = 0;
-        int end = placeholder.length();
         if (placeholder.charAt(start) == '\\') {
             start++;
         }
@@ -267,104 +880,32 @@ public abstract class SanitizePromptHeaderTransform implements TransformAction<T
         return normalized.toString();
     }
 
-    private static List<File> findValuesXmlFiles(File root) {
-        List<File> files = new ArrayList<>();
-        Deque<File> stack = new ArrayDeque<>();
-        stack.push(root);
-        while (!stack.isEmpty()) {
-            File current = stack.pop();
-            File[] children = current.listFiles();
-            if (children == null) {
-                continue;
-            }
-            for (File child : children) {
-                if (child.isDirectory()) {
-                    stack.push(child);
-                } else if (child.getName().endsWith(".xml") && isValuesDirectory(child.getParentFile())) {
-                    files.add(child);
-                }
-            }
+    /** Matches {@code res/values-qualifier/name.xml} entries, at any depth inside the archive. */
+    static boolean isValuesXmlEntry(String entryName) {
+        if (!entryName.endsWith(".xml")) {
+            return false;
         }
-        return files;
-    }
-
-    private static boolean isValuesDirectory(File directory) {
-        if (directory == null) {
+        int fileSeparator = entryName.lastIndexOf('/');
+        if (fileSeparator <= 0) {
             return false;
         }
-        String name = directory.getName();
-        if (!name.startsWith("values")) {
+        int directorySeparator = entryName.lastIndexOf('/', fileSeparator - 1);
+        if (!entryName.startsWith("values", directorySeparator + 1)) {
             return false;
         }
-        File parent = directory.getParentFile();
-        return parent != null && "res".equals(parent.getName());
+        int resStart = entryName.lastIndexOf('/', directorySeparator - 1) + 1;
+        return directorySeparator - resStart == 3 && entryName.startsWith("res", resStart);
     }
 
-    private static void unzipTo(File input, File destination) throws IOException {
-        destination.mkdirs();
-        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(input)))) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                File entryFile = new File(destination, entry.getName());
-                if (entry.isDirectory()) {
-                    entryFile.mkdirs();
-                } else {
-                    File parent = entryFile.getParentFile();
-                    if (parent != null) {
-                        parent.mkdirs();
-                    }
-                    try (OutputStream output = new BufferedOutputStream(new FileOutputStream(entryFile))) {
-                        zis.transferTo(output);
-                    }
-                }
-                zis.closeEntry();
-            }
-        }
-    }
+    private static final class ValuesEntryResult {
+        static final ValuesEntryResult UNCHANGED = new ValuesEntryResult(null, 0);
 
-    private static void zipFrom(File source, File output) throws IOException {
-        output.getParentFile().mkdirs();
-        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
-            Path root = source.toPath();
-            Files.walk(root).forEach(path -> {
-                Path relative = root.relativize(path);
-                if (relative.getNameCount() == 0) {
-                    return;
-                }
-                String normalized = relative.toString().replace(File.separatorChar, '/');
-                try {
-                    if (Files.isDirectory(path)) {
-                        if (!normalized.endsWith("/")) {
-                            normalized = normalized + "/";
-                        }
-                        zos.putNextEntry(new ZipEntry(normalized));
-                        zos.closeEntry();
-                    } else {
-                        zos.putNextEntry(new ZipEntry(normalized));
-                        Files.copy(path, zos);
-                        zos.closeEntry();
-                    }
-                } catch (IOException e) {
-                    throw new UncheckedIOException(e);
-                }
-            });
-        } catch (UncheckedIOException exception) {
-            throw exception.getCause();
-        }
-    }
+        final byte[] patched;
+        final int patchedStrings;
 
-    private static void deleteRecursively(Path root) throws IOException {
-        if (!Files.exists(root)) {
-            return;
+        ValuesEntryResult(byte[] patched, int patchedStrings) {
+            this.patched = patched;
+            this.patchedStrings = patchedStrings;
         }
-        Files.walk(root)
-            .sorted(Comparator.reverseOrder())
-            .forEach(path -> {
-                try {
-                    Files.deleteIfExists(path);
-                } catch (IOException ignored) {
-                    // best effort cleanup
-                }
-            });
     }
 }
@@ -0,0 +1,182 @@
+package com.lumen.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Daemon-wide memory of the archives {@link SanitizePromptHeaderTransform} rewrote, keyed by the
+ * SHA-256 of the input archive and the rules it was sanitized with. The same AAR resolved for
+ * several variants, or published under several coordinates, is then only rewritten once; later runs
+ * hard link (or copy) the first output instead. Inputs are only hashed once a values entry mentions
+ * a ruled name, which the cheap scan of the transform rules out first for most archives, and a hit
+ * skips rewriting the values entries altogether.
+ *
+ * <p>Rewritten outputs live in Gradle's transform workspace, which Gradle may clean up at any
+ * time, so a remembered output is only reused while it still exists with the recorded size.
+ * Digests are remembered per file path, size and modification time, so an artifact seen again is
+ * not hashed twice.
+ */
+final class TransformMemo {
+    static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static TransformMemo shared;
+
+    private final int maxEntries;
+    private final Map<String, Result> results;
+    private final Map<FileKey, String> digests;
+    private int hashedInputs;
+
+    TransformMemo(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.results = lruMap(maxEntries);
+        this.digests = lruMap(maxEntries);
+    }
+
+    /** One memo for the whole daemon, replaced when the configured bound changes. */
+    static synchronized TransformMemo shared(int maxEntries) {
+        if (shared == null || shared.maxEntries != maxEntries) {
+            shared = new TransformMemo(maxEntries);
+        }
+        return shared;
+    }
+
+    /** A rewritten archive, with the size it had when it was remembered. */
+    static final class Result {
+        final File output;
+        final long outputLength;
+
+        Result(File output) {
+            this.output = output;
+            this.outputLength = output.length();
+        }
+
+        private boolean isUsable() {
+            return output.isFile() && output.length() == outputLength;
+        }
+    }
+
+    /** Whether results are remembered at all; when not, there is no point in computing keys. */
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /** How many inputs were read in full to hash them. */
+    synchronized int hashedInputs() {
+        return hashedInputs;
+    }
+
+    /** The memo key for {@code input} under {@code rulesFingerprint}. */
+    String keyFor(File input, String rulesFingerprint) throws IOException {
+        return digestOf(input) + '\n' + rulesFingerprint;
+    }
+
+    /** The remembered result for {@code key}, or {@code null} on a miss. */
+    synchronized Result lookup(String key) {
+        Result result = results.get(key);
+        if (result != null && !result.isUsable()) {
+            results.remove(key);
+            return null;
+        }
+        return result;
+    }
+
+    synchronized void remember(String key, Result result) {
+        if (maxEntries > 0) {
+            results.put(key, result);
+        }
+    }
+
+    /** Makes {@code target} a hard link to {@code source}, falling back to a copy across file systems. */
+    static void materialize(File source, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+        } catch (IOException | UnsupportedOperationException exception) {
+            Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private String digestOf(File input) throws IOException {
+        FileKey fileKey = new FileKey(input.getAbsolutePath(), input.length(), input.lastModified());
+        synchronized (this) {
+            String digest = digests.get(fileKey);
+            if (digest != null) {
+                return digest;
+            }
+        }
+        String digest = sha256(input);
+        synchronized (this) {
+            hashedInputs++;
+            if (maxEntries > 0) {
+                digests.put(fileKey, digest);
+            }
+        }
+        return digest;
+    }
+
+    static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static <K, V> Map<K, V> lruMap(int maxEntries) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static final class FileKey {
+        private final String path;
+        private final long length;
+        private final long lastModified;
+
+        FileKey(String path, long length, long lastModified) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof FileKey)) {
+                return false;
+            }
+            FileKey that = (FileKey) other;
+            return length == that.length && lastModified == that.lastModified && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return (path.hashCode() * 31 + Long.hashCode(length)) * 31 + Long.hashCode(lastModified);
+        }
+    }
+}
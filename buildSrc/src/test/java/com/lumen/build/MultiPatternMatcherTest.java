@@ -0,0 +1,78 @@
+package com.lumen.build;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+public final class MultiPatternMatcherTest {
+    @Test
+    public void containsAny_findsOverlappingPatterns() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(List.of("he", "she", "his", "hers"));
+        assertTrue(matcher.containsAny(utf8("ushers")));
+        assertTrue(matcher.containsAny(utf8("aHIs")));
+        assertTrue(matcher.containsAny(utf8("xxsHe")));
+        assertFalse(matcher.containsAny(utf8("hxsxhi")));
+        assertFalse(matcher.containsAny(utf8("h\u00e9")));
+    }
+
+    @Test
+    public void containsAny_agreesWithNaiveSearch() {
+        List<String> patterns = List.of("prompt_header", "header", "title", "promo");
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(patterns);
+        Random random = new Random(11);
+        String alphabet = "promptheadrilPROMPT_HEADER_ ";
+        for (int iteration = 0; iteration < 20_000; iteration++) {
+            StringBuilder text = new StringBuilder();
+            for (int index = random.nextInt(24); index > 0; index--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String lower = text.toString().toLowerCase(Locale.ROOT);
+            boolean expected = false;
+            for (String pattern : patterns) {
+                expected |= lower.contains(pattern);
+            }
+            assertEquals(text.toString(), expected, matcher.containsAny(utf8(text.toString())));
+        }
+    }
+
+    @Test
+    public void scanner_findsMatchesAcrossChunks() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(List.of("prompt_header"));
+        MultiPatternMatcher.Scanner scanner = matcher.scanner();
+        byte[] input = utf8("<string name='PROMPT_header'>");
+        assertFalse(scanner.feed(input, 0, 18));
+        assertTrue(scanner.feed(input, 18, input.length - 18));
+        assertTrue(scanner.feed(new byte[0], 0, 0));
+    }
+
+    @Test
+    public void matchExact_returnsIndexOfWholeRangeMatchOnly() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(List.of("prompt_header", "header"));
+        assertEquals(0, matcher.matchExact("name=\"Prompt_Header\"", 6, 19));
+        assertEquals(1, matcher.matchExact("header", 0, 6));
+        assertEquals(-1, matcher.matchExact("prompt_header", 7, 12));
+        assertEquals(-1, matcher.matchExact("my_header", 0, 9));
+        assertEquals(-1, matcher.matchExact("prompt_headers", 0, 14));
+        assertEquals(-1, matcher.matchExact("", 0, 0));
+    }
+
+    @Test
+    public void compile_rejectsDuplicatePatterns() {
+        try {
+            MultiPatternMatcher.compile(List.of("title", "Title"));
+            throw new AssertionError("Expected duplicate patterns to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // rejected
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
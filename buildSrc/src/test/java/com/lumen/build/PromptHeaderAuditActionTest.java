@@ -0,0 +1,36 @@
+package com.lumen.build;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Test;
+
+public final class PromptHeaderAuditActionTest {
+    @Test
+    public void formatFindings_groupsHunksByEntry() {
+        List<ResourceFinding> findings = List.of(
+                new ResourceFinding("res/values/values.xml", 4, "prompt_header", "{user}", "%1$s"),
+                new ResourceFinding("res/values/values.xml", 9, "share_title", "a\n{b}", "a\n%1$s"),
+                new ResourceFinding("res/values-fr/values-fr.xml", 2, "prompt_header", "\\U1F600", "\\\\U1F600"));
+
+        assertEquals(
+                "=== com.example:lib:1.0 (lib-1.0.aar)\n"
+                        + "--- a/res/values/values.xml\n"
+                        + "+++ b/res/values/values.xml\n"
+                        + "@@ line 4 @@ prompt_header\n"
+                        + "-{user}\n"
+                        + "+%1$s\n"
+                        + "@@ line 9 @@ share_title\n"
+                        + "-a\n"
+                        + "-{b}\n"
+                        + "+a\n"
+                        + "+%1$s\n"
+                        + "--- a/res/values-fr/values-fr.xml\n"
+                        + "+++ b/res/values-fr/values-fr.xml\n"
+                        + "@@ line 2 @@ prompt_header\n"
+                        + "-\\U1F600\n"
+                        + "+\\\\U1F600\n"
+                        + "\n",
+                PromptHeaderAuditAction.formatFindings("com.example:lib:1.0", "lib-1.0.aar", findings));
+    }
+}
@@ -0,0 +1,155 @@
+package com.lumen.build;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class RawZipWriterTest {
+    @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void copyEntry_preservesCompressedBytesAndCrc() throws IOException {
+        File input = createArchive();
+        File output = new File(temporaryFolder.getRoot(), "copy.aar");
+
+        try (RawZipReader reader = RawZipReader.open(input);
+                RawZipWriter writer = RawZipWriter.create(output)) {
+            for (RawZipReader.Entry entry : reader.entries()) {
+                writer.copyEntry(reader, entry);
+            }
+        }
+
+        try (RawZipReader original = RawZipReader.open(input);
+                RawZipReader copy = RawZipReader.open(output)) {
+            assertEquals(original.entries().size(), copy.entries().size());
+            for (int index = 0; index < original.entries().size(); index++) {
+                RawZipReader.Entry before = original.entries().get(index);
+                RawZipReader.Entry after = copy.entries().get(index);
+                assertEquals(before.name, after.name);
+                assertEquals(before.method, after.method);
+                assertEquals(before.crc, after.crc);
+                assertEquals(before.compressedSize, after.compressedSize);
+                assertArrayEquals(rawBytes(original, before), rawBytes(copy, after));
+            }
+        }
+    }
+
+    @Test
+    public void scan_streamsEntriesWhoseCompressedBytesSpanSeveralChunks() throws IOException {
+        byte[] noise = new byte[300 * 1024];
+        new Random(7).nextBytes(noise);
+        File input = temporaryFolder.newFile("noise.aar");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(input))) {
+            zos.putNextEntry(new ZipEntry("res/raw/noise.bin"));
+            zos.write(noise);
+            zos.closeEntry();
+        }
+
+        ByteArrayOutputStream scanned = new ByteArrayOutputStream();
+        try (RawZipReader reader = RawZipReader.open(input)) {
+            RawZipReader.Entry entry = reader.entries().get(0);
+            boolean stopped = reader.scan(entry, (chunk, length) -> {
+                scanned.write(chunk, 0, length);
+                return false;
+            });
+            assertFalse(stopped);
+            assertArrayEquals(noise, reader.read(entry));
+        }
+        assertArrayEquals(noise, scanned.toByteArray());
+    }
+
+    @Test
+    public void writeEntry_producesArchiveReadableByZipFile() throws IOException {
+        File input = createArchive();
+        File output = new File(temporaryFolder.getRoot(), "patched.aar");
+        byte[] patched = "<resources><string name='prompt_header'>%1$s</string></resources>"
+                .getBytes(StandardCharsets.UTF_8);
+
+        try (RawZipReader reader = RawZipReader.open(input);
+                RawZipWriter writer = RawZipWriter.create(output)) {
+            for (RawZipReader.Entry entry : reader.entries()) {
+                if (entry.name.equals("res/values/values.xml")) {
+                    writer.writeEntry(entry, patched);
+                } else {
+                    writer.copyEntry(reader, entry);
+                }
+            }
+        }
+
+        try (ZipFile zip = new ZipFile(output)) {
+            assertArrayEquals(patched, read(zip, "res/values/values.xml"));
+            assertArrayEquals(classesJar(), read(zip, "classes.jar"));
+            assertArrayEquals(manifest(), read(zip, "AndroidManifest.xml"));
+            assertEquals(4, zip.size());
+        }
+    }
+
+    private File createArchive() throws IOException {
+        File archive = temporaryFolder.newFile("library.aar");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive))) {
+            zos.putNextEntry(new ZipEntry("res/values/"));
+            zos.closeEntry();
+
+            byte[] manifest = manifest();
+            ZipEntry stored = new ZipEntry("AndroidManifest.xml");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(manifest.length);
+            CRC32 crc = new CRC32();
+            crc.update(manifest);
+            stored.setCrc(crc.getValue());
+            zos.putNextEntry(stored);
+            zos.write(manifest);
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("classes.jar"));
+            zos.write(classesJar());
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("res/values/values.xml"));
+            zos.write("<resources><string name='prompt_header'>{str}</string></resources>"
+                    .getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        return archive;
+    }
+
+    private static byte[] rawBytes(RawZipReader reader, RawZipReader.Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        reader.transferRaw(entry, Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        try (InputStream stream = zip.getInputStream(zip.getEntry(name))) {
+            return stream.readAllBytes();
+        }
+    }
+
+    private static byte[] manifest() {
+        return "<manifest package=\"com.example\"/>".getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] classesJar() {
+        byte[] classes = new byte[128 * 1024];
+        for (int index = 0; index < classes.length; index++) {
+            classes[index] = (byte) ((index * 7) ^ (index >> 5));
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,54 @@
+package com.lumen.build;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.Test;
+
+public final class SanitizeMetricsServiceTest {
+    @Test
+    public void reports_listSlowestArtifactFirst() throws IOException {
+        List<ArtifactMetrics> sorted = SanitizeMetricsService.sortedBySlowest(List.of(
+                metrics("fast.aar", SanitizePromptHeaderTransform.Outcome.FAST_PATH, 1_000_000, 0),
+                metrics("slow,\"quoted\".aar", SanitizePromptHeaderTransform.Outcome.REWRITTEN, 25_500_000, 3)));
+
+        StringWriter csv = new StringWriter();
+        SanitizeMetricsService.writeCsv(sorted, csv);
+        assertEquals(
+                "artifact,outcome,copy_through,wall_time_ms,bytes_read,bytes_written,values_files_scanned,"
+                        + "strings_patched,memoized\n"
+                        + "\"slow,\"\"quoted\"\".aar\",REWRITTEN,false,25.500,2048,1024,4,3,false\n"
+                        + "fast.aar,FAST_PATH,true,1.000,2048,1024,4,0,true\n",
+                csv.toString());
+
+        StringWriter json = new StringWriter();
+        SanitizeMetricsService.writeJson(sorted, json);
+        assertEquals(
+                "{\n  \"artifacts\": [\n"
+                        + "    {\"artifact\": \"slow,\\\"quoted\\\".aar\", \"outcome\": \"REWRITTEN\", "
+                        + "\"copyThrough\": false, \"wallTimeMillis\": 25.500, \"bytesRead\": 2048, "
+                        + "\"bytesWritten\": 1024, \"valuesFilesScanned\": 4, \"stringsPatched\": 3, "
+                        + "\"memoized\": false},\n"
+                        + "    {\"artifact\": \"fast.aar\", \"outcome\": \"FAST_PATH\", "
+                        + "\"copyThrough\": true, \"wallTimeMillis\": 1.000, \"bytesRead\": 2048, "
+                        + "\"bytesWritten\": 1024, \"valuesFilesScanned\": 4, \"stringsPatched\": 0, "
+                        + "\"memoized\": true}\n"
+                        + "  ]\n}\n",
+                json.toString());
+    }
+
+    private static ArtifactMetrics metrics(
+            String artifact, SanitizePromptHeaderTransform.Outcome outcome, long wallTimeNanos, int stringsPatched) {
+        ArtifactMetrics metrics = new ArtifactMetrics(artifact);
+        metrics.outcome = outcome;
+        metrics.wallTimeNanos = wallTimeNanos;
+        metrics.bytesRead = 2048;
+        metrics.bytesWritten = 1024;
+        metrics.valuesFilesScanned = 4;
+        metrics.stringsPatched = stringsPatched;
+        metrics.memoized = stringsPatched == 0;
+        return metrics;
+    }
+}
@@ -1,17 +1,35 @@
 package com.lumen.build;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.gradle.api.GradleException;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -205,6 +223,411 @@ public final class SanitizePromptHeaderTransformTest {
         assertNoInvalidUnicodeEscapes(sanitized);
     }
 
+    @Test
+    public void sanitizePromptHeaderFile_onlyRewritesStringElements() throws IOException {
+        String contents = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+                + "<resources>\n"
+                + "    <plurals name='prompt_header'><item quantity='one'>{str}</item></plurals>\n"
+                + "    <item name='prompt_header' type='dimen'>{str}</item>\n"
+                + "    <string name='prompt_header'/>\n"
+                + "    <string name='title'>{str}</string>\n"
+                + "    <STRING NAME = \"Prompt_Header\">{str}</STRING>\n"
+                + "</resources>\n";
+        Path valuesFile = createValuesFile(contents);
+
+        boolean modified = sanitize(valuesFile.toFile());
+        assertTrue("Expected the upper-case string element to be sanitized", modified);
+
+        String sanitized = Files.readString(valuesFile, StandardCharsets.UTF_8);
+        assertEquals(
+                contents.replace("<STRING NAME = \"Prompt_Header\">{str}</STRING>",
+                        "<STRING NAME = \"Prompt_Header\">%1$s</STRING>"),
+                sanitized);
+    }
+
+    @Test
+    public void sanitizePromptHeaderFile_leavesCleanDocumentUntouched() throws IOException {
+        String contents = "<resources>\n"
+                + "    <string name='prompt_header'>Hello %1$s \\u00B0</string>\n"
+                + "</resources>\n";
+        Path valuesFile = createValuesFile(contents);
+
+        assertFalse(sanitize(valuesFile.toFile()));
+        assertEquals(contents, Files.readString(valuesFile, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void sanitizeStringValue_matchesTwoPassSanitization() {
+        char[] alphabet = {'{', '}', '\\', 'u', 'U', '0', 'a', 'F', ' ', 'x', '"'};
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 20_000; iteration++) {
+            char[] value = new char[random.nextInt(16)];
+            for (int index = 0; index < value.length; index++) {
+                value[index] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String content = new String(value);
+            String expected = SanitizePromptHeaderTransform.escapeInvalidUnicodeEscapes(
+                    SanitizePromptHeaderTransform.sanitizePlaceholders(content));
+            assertEquals("Mismatch for " + content, expected,
+                    SanitizePromptHeaderTransform.sanitizeStringValue(content));
+        }
+    }
+
+    @Test
+    public void sanitizeArchive_takesFastPathWithoutPromptHeader() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("AndroidManifest.xml", utf8("<manifest package=\"com.example\"/>"));
+        entries.put("res/values/values.xml", utf8("<resources><string name='title'>{str}</string></resources>"));
+        entries.put("res/layout/prompt_header.xml", utf8("<TextView android:text='@string/title'/>"));
+        File input = createArchive(entries);
+
+        SanitizePromptHeaderTransform.Outcome outcome =
+                SanitizePromptHeaderTransform.sanitizeArchive(input, () -> {
+                    throw new AssertionError("Output should not be requested for untouched archives");
+                }, 1);
+
+        assertEquals(SanitizePromptHeaderTransform.Outcome.FAST_PATH, outcome);
+    }
+
+    @Test
+    public void sanitizeArchive_handsThroughValidPromptHeader() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(
+                "res/values/values.xml",
+                utf8("<resources><string name='PROMPT_HEADER'>Hello %1$s</string></resources>"));
+        File input = createArchive(entries);
+
+        SanitizePromptHeaderTransform.Outcome outcome =
+                SanitizePromptHeaderTransform.sanitizeArchive(input, () -> {
+                    throw new AssertionError("Output should not be requested for untouched archives");
+                }, 1);
+
+        assertEquals(SanitizePromptHeaderTransform.Outcome.UNCHANGED, outcome);
+    }
+
+    @Test
+    public void defaultRules_mentionFoldsOnlyAsciiLetters() {
+        ResourceRules rules = ResourceRules.DEFAULT;
+        assertTrue(rules.mentionsAny(utf8("name='Prompt_Header'")));
+        assertTrue(rules.mentionsAny(utf8("prompt_header")));
+        assertFalse(rules.mentionsAny(utf8("prompt\u007fheader")));
+        assertFalse(rules.mentionsAny(utf8("prompt_heade")));
+        assertFalse(rules.mentionsAny(new byte[0]));
+    }
+
+    @Test
+    public void sanitizeValuesDocument_appliesEachRuleToItsOwnResource() {
+        ResourceRules rules = ResourceRules.parse(List.of(
+                "prompt_header:string:placeholders,unicode-escapes",
+                "share_title:string:placeholders",
+                "emoji_label:string,plurals:unicode-escapes"));
+        String document = "<resources>\n"
+                + "<string name='prompt_header'>{user} \\U1F600</string>\n"
+                + "<string name='Share_Title'>{user} \\U1F600</string>\n"
+                + "<item type='string' name='emoji_label'>{user} \\U1F600</item>\n"
+                + "<string name='other'>{user} \\U1F600</string>\n"
+                + "<dimen name='share_title'>{user}</dimen>\n"
+                + "</resources>";
+
+        assertEquals(
+                "<resources>\n"
+                        + "<string name='prompt_header'>%1$s \\\\U1F600</string>\n"
+                        + "<string name='Share_Title'>%1$s \\U1F600</string>\n"
+                        + "<item type='string' name='emoji_label'>{user} \\\\U1F600</item>\n"
+                        + "<string name='other'>{user} \\U1F600</string>\n"
+                        + "<dimen name='share_title'>{user}</dimen>\n"
+                        + "</resources>",
+                SanitizePromptHeaderTransform.sanitizeValuesDocument(document, rules));
+    }
+
+    @Test
+    public void resourceRules_rejectMalformedSpecs() {
+        List<String> malformed =
+                List.of("prompt_header", "prompt_header:string", "x:string:bogus", "bad name:string:placeholders");
+        for (String spec : malformed) {
+            try {
+                ResourceRules.parse(List.of(spec));
+                throw new AssertionError("Expected " + spec + " to be rejected");
+            } catch (GradleException expected) {
+                // rejected
+            }
+        }
+    }
+
+    @Test
+    public void sanitizeArchive_rewritesOnlyValuesEntries() throws IOException {
+        byte[] classes = new byte[64 * 1024];
+        for (int index = 0; index < classes.length; index++) {
+            classes[index] = (byte) (index * 31);
+        }
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("AndroidManifest.xml", utf8("<manifest package=\"com.example\"/>"));
+        entries.put("classes.jar", classes);
+        entries.put("res/values/values.xml", utf8("<resources><string name='title'>{str}</string></resources>"));
+        entries.put(
+                "res/values-fr/values-fr.xml",
+                utf8("<resources><string name='prompt_header'>\"{str}\"</string></resources>"));
+        File input = createArchive(entries);
+        File output = new File(temporaryFolder.getRoot(), "out/library-sanitized.aar");
+
+        SanitizePromptHeaderTransform.Outcome outcome =
+                SanitizePromptHeaderTransform.sanitizeArchive(input, () -> output, 1);
+        assertEquals(SanitizePromptHeaderTransform.Outcome.REWRITTEN, outcome);
+
+        Map<String, byte[]> rewritten = readArchive(output);
+        assertEquals(entries.keySet(), rewritten.keySet());
+        assertArrayEquals(entries.get("AndroidManifest.xml"), rewritten.get("AndroidManifest.xml"));
+        assertArrayEquals(classes, rewritten.get("classes.jar"));
+        assertArrayEquals(entries.get("res/values/values.xml"), rewritten.get("res/values/values.xml"));
+        assertEquals(
+                "<resources><string name='prompt_header'>\"%1$s\"</string></resources>",
+                new String(rewritten.get("res/values-fr/values-fr.xml"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void sanitizeArchive_parallelOutputMatchesSequentialOutput() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("classes.jar", new byte[4096]);
+        for (int locale = 0; locale < 48; locale++) {
+            StringBuilder values = new StringBuilder("<resources>\n");
+            for (int index = 0; index < 400; index++) {
+                values.append("    <string name='label_").append(index).append("'>Label ").append(index)
+                        .append("</string>\n");
+            }
+            if (locale % 3 == 0) {
+                values.append("    <string name='prompt_header'>{user} ").append(locale).append("</string>\n");
+            }
+            entries.put("res/values-l" + locale + "/values.xml", utf8(values.append("</resources>\n").toString()));
+        }
+        File input = createArchive(entries);
+        File sequential = new File(temporaryFolder.getRoot(), "sequential.aar");
+        File parallel = new File(temporaryFolder.getRoot(), "parallel.aar");
+
+        assertEquals(
+                SanitizePromptHeaderTransform.Outcome.REWRITTEN,
+                SanitizePromptHeaderTransform.sanitizeArchive(input, () -> sequential, 1));
+        assertEquals(
+                SanitizePromptHeaderTransform.Outcome.REWRITTEN,
+                SanitizePromptHeaderTransform.sanitizeArchive(input, () -> parallel, 4));
+
+        assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+        assertEquals(
+                "<string name='prompt_header'>%1$s 3</string>",
+                extractPromptHeader(readArchive(parallel).get("res/values-l3/values.xml")));
+    }
+
+    @Test
+    public void sharedPool_shutsDownThePoolItReplaces() {
+        ForkJoinPool first = SanitizePromptHeaderTransform.sharedPool(2);
+        assertSame(first, SanitizePromptHeaderTransform.sharedPool(2));
+
+        ForkJoinPool second = SanitizePromptHeaderTransform.sharedPool(3);
+
+        assertTrue(first.isShutdown());
+        assertFalse(second.isShutdown());
+    }
+
+    @Test
+    public void sanitizeArchive_producesReproducibleOutput() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("classes.jar", new byte[2048]);
+        entries.put("res/values/values.xml", utf8("<resources><string name='prompt_header'>{str}</string></resources>"));
+        entries.put("AndroidManifest.xml", utf8("<manifest package=\"com.example\"/>"));
+        File input = createArchive(entries);
+        File first = new File(temporaryFolder.getRoot(), "first/library-sanitized.aar");
+        File second = new File(temporaryFolder.getRoot(), "second/library-sanitized.aar");
+
+        SanitizePromptHeaderTransform.sanitizeArchive(input, () -> first, 1);
+        SanitizePromptHeaderTransform.sanitizeArchive(input, () -> second, 1);
+
+        assertEquals(sha256(first), sha256(second));
+    }
+
+    @Test
+    public void sanitizeArchive_outputIgnoresEntryOrderAndTimestamps() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("res/values/values.xml", utf8("<resources><string name='prompt_header'>{str}</string></resources>"));
+        entries.put("AndroidManifest.xml", utf8("<manifest package=\"com.example\"/>"));
+        File forward = createArchive(entries, "forward.aar", 0L);
+        Map<String, byte[]> reversed = new LinkedHashMap<>();
+        reversed.put("AndroidManifest.xml", entries.get("AndroidManifest.xml"));
+        reversed.put("res/values/values.xml", entries.get("res/values/values.xml"));
+        File backward = createArchive(reversed, "backward.aar", 1_600_000_000_000L);
+        File forwardOutput = new File(temporaryFolder.getRoot(), "forward-sanitized.aar");
+        File backwardOutput = new File(temporaryFolder.getRoot(), "backward-sanitized.aar");
+
+        SanitizePromptHeaderTransform.sanitizeArchive(forward, () -> forwardOutput, 1);
+        SanitizePromptHeaderTransform.sanitizeArchive(backward, () -> backwardOutput, 1);
+
+        assertEquals(sha256(forwardOutput), sha256(backwardOutput));
+    }
+
+    @Test
+    public void sanitizeArchive_recordsArtifactMetrics() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("classes.jar", new byte[4096]);
+        entries.put("res/values/values.xml", utf8("<resources><string name='title'>{str}</string></resources>"));
+        entries.put(
+                "res/values-fr/values-fr.xml",
+                utf8("<resources><string name='prompt_header'>{str}</string>"
+                        + "<item type='string' name='prompt_header'>\\U1F600</item></resources>"));
+        File input = createArchive(entries);
+        File output = new File(temporaryFolder.getRoot(), "library-sanitized.aar");
+
+        ArtifactMetrics metrics = new ArtifactMetrics(input.getName());
+        SanitizePromptHeaderTransform.sanitizeArchive(
+                input, () -> output, 1, Long.MAX_VALUE, ResourceRules.DEFAULT, metrics);
+
+        assertEquals(SanitizePromptHeaderTransform.Outcome.REWRITTEN, metrics.outcome);
+        assertFalse(metrics.isCopyThrough());
+        assertEquals(2, metrics.valuesFilesScanned);
+        assertEquals(2, metrics.stringsPatched);
+        assertEquals(output.length(), metrics.bytesWritten);
+        assertTrue(metrics.bytesRead > 0 && metrics.bytesRead <= input.length() * 2);
+
+        ArtifactMetrics handedThrough = new ArtifactMetrics(input.getName());
+        File clean = createArchive(Map.of("res/values/values.xml", utf8("<resources/>")), "clean.aar", 0);
+        SanitizePromptHeaderTransform.sanitizeArchive(clean, () -> {
+            throw new AssertionError("Clean archives must not request an output");
+        }, 1, Long.MAX_VALUE, ResourceRules.DEFAULT, handedThrough);
+        assertTrue(handedThrough.isCopyThrough());
+        assertEquals(0, handedThrough.bytesWritten);
+        assertEquals(0, handedThrough.stringsPatched);
+    }
+
+    @Test
+    public void sanitizeArchive_hashesOnlyInputsMentioningRules() throws IOException {
+        TransformMemo memo = new TransformMemo(8);
+        File fastPath = createArchive(
+                Map.of("res/values/values.xml", utf8("<resources><string name='title'>{str}</string></resources>")),
+                "fast.aar",
+                0);
+        for (int run = 0; run < 2; run++) {
+            SanitizePromptHeaderTransform.sanitizeArchive(fastPath, () -> {
+                throw new AssertionError("Untouched archives must not request an output");
+            }, memo, "rules", 1, Long.MAX_VALUE, ResourceRules.DEFAULT, new ArtifactMetrics(fastPath.getName()));
+        }
+        assertEquals(0, memo.hashedInputs());
+
+        String valid = "<resources><string name='prompt_header'>%1$s</string></resources>";
+        File unchanged = createArchive(Map.of("res/values/values.xml", utf8(valid)), "unchanged.aar", 0);
+        SanitizePromptHeaderTransform.Outcome outcome = SanitizePromptHeaderTransform.sanitizeArchive(unchanged, () -> {
+            throw new AssertionError("Untouched archives must not request an output");
+        }, memo, "rules", 1, Long.MAX_VALUE, ResourceRules.DEFAULT, new ArtifactMetrics(unchanged.getName()));
+        assertEquals(SanitizePromptHeaderTransform.Outcome.UNCHANGED, outcome);
+        assertEquals(1, memo.hashedInputs());
+
+        String broken = "<resources><string name='prompt_header'>{str}</string></resources>";
+        File rewritten = createArchive(Map.of("res/values/values.xml", utf8(broken)), "rewritten.aar", 0);
+        TransformMemo disabled = new TransformMemo(0);
+        File output = new File(temporaryFolder.getRoot(), "disabled/rewritten-sanitized.aar");
+        SanitizePromptHeaderTransform.sanitizeArchive(rewritten, () -> output, disabled, "rules", 1,
+                Long.MAX_VALUE, ResourceRules.DEFAULT, new ArtifactMetrics(rewritten.getName()));
+        assertEquals(0, disabled.hashedInputs());
+        assertTrue(output.isFile());
+    }
+
+    @Test
+    public void sanitizeArchive_memoHitSkipsRewritingValuesEntries() throws IOException {
+        TransformMemo memo = new TransformMemo(8);
+        String broken = "<resources><string name='prompt_header'>{str}</string></resources>";
+        File rewritten = createArchive(Map.of("res/values/values.xml", utf8(broken)), "rewritten.aar", 0);
+        File first = new File(temporaryFolder.getRoot(), "first/rewritten-sanitized.aar");
+        File second = new File(temporaryFolder.getRoot(), "second/rewritten-sanitized.aar");
+        ArtifactMetrics firstMetrics = new ArtifactMetrics(rewritten.getName());
+        ArtifactMetrics secondMetrics = new ArtifactMetrics(rewritten.getName());
+
+        SanitizePromptHeaderTransform.Outcome firstOutcome = SanitizePromptHeaderTransform.sanitizeArchive(
+                rewritten, () -> first, memo, "rules", 1, Long.MAX_VALUE, ResourceRules.DEFAULT, firstMetrics);
+        SanitizePromptHeaderTransform.Outcome secondOutcome = SanitizePromptHeaderTransform.sanitizeArchive(
+                rewritten, () -> second, memo, "rules", 1, Long.MAX_VALUE, ResourceRules.DEFAULT, secondMetrics);
+
+        assertEquals(SanitizePromptHeaderTransform.Outcome.REWRITTEN, firstOutcome);
+        assertEquals(SanitizePromptHeaderTransform.Outcome.REWRITTEN, secondOutcome);
+        assertEquals(1, memo.hashedInputs());
+        assertFalse(firstMetrics.memoized);
+        assertEquals(1, firstMetrics.stringsPatched);
+        assertTrue(secondMetrics.memoized);
+        assertEquals(0, secondMetrics.stringsPatched);
+        assertEquals(second.length(), secondMetrics.bytesWritten);
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    public void sanitizeArchive_streamsEntriesOverHeapBudget() throws IOException {
+        String dimen = "<dimen name='d'>1dp</dimen>";
+        StringBuilder filler = new StringBuilder("<resources>");
+        while (filler.length() + dimen.length() <= 64 * 1024 - 20) {
+            filler.append(dimen);
+        }
+        while (filler.length() < 64 * 1024 - 20) {
+            filler.append(' ');
+        }
+        String large = filler.toString();
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("res/values/values.xml", utf8(large + "</resources>"));
+        // The mention straddles the scanner's 64 KiB chunk boundary.
+        entries.put("res/values-fr/values-fr.xml",
+                utf8(large + "<string name='prompt_header'>{str}</string></resources>"));
+        File input = createArchive(entries);
+        File budgeted = new File(temporaryFolder.getRoot(), "budgeted.aar");
+        File unbounded = new File(temporaryFolder.getRoot(), "unbounded.aar");
+
+        ArtifactMetrics metrics = new ArtifactMetrics(input.getName());
+        assertEquals(
+                SanitizePromptHeaderTransform.Outcome.REWRITTEN,
+                SanitizePromptHeaderTransform.sanitizeArchive(
+                        input, () -> budgeted, 1, 1024, ResourceRules.DEFAULT, metrics));
+        SanitizePromptHeaderTransform.sanitizeArchive(input, () -> unbounded, 1);
+
+        assertEquals(sha256(unbounded), sha256(budgeted));
+        assertEquals(1, metrics.stringsPatched);
+
+        File clean = createArchive(Map.of("res/values/values.xml", utf8(large + "</resources>")), "clean.aar", 0);
+        assertEquals(
+                SanitizePromptHeaderTransform.Outcome.FAST_PATH,
+                SanitizePromptHeaderTransform.sanitizeArchive(clean, () -> {
+                    throw new AssertionError("Clean archives must not request an output");
+                }, 1, 1024, ResourceRules.DEFAULT, new ArtifactMetrics(clean.getName())));
+    }
+
+    @Test
+    public void auditArchive_reportsRewritesWithoutWriting() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(
+                "res/values/values.xml",
+                utf8("<resources>\n<string name='prompt_header'>%1$s</string>\n</resources>"));
+        entries.put(
+                "res/values-fr/values-fr.xml",
+                utf8("<resources>\n<string name='title'>{a}</string>\n<string name='prompt_header'>{a}</string>\n"
+                        + "</resources>"));
+        File input = createArchive(entries);
+        String before = sha256(input);
+
+        List<ResourceFinding> findings = SanitizePromptHeaderTransform.auditArchive(input, ResourceRules.DEFAULT);
+
+        assertEquals(before, sha256(input));
+        assertEquals(1, findings.size());
+        ResourceFinding finding = findings.get(0);
+        assertEquals("res/values-fr/values-fr.xml", finding.entryName);
+        assertEquals(3, finding.line);
+        assertEquals("prompt_header", finding.resourceName);
+        assertEquals("{a}", finding.original);
+        assertEquals("%1$s", finding.sanitized);
+    }
+
+    @Test
+    public void isValuesXmlEntry_matchesOnlyResourceValuesDirectories() {
+        assertTrue(SanitizePromptHeaderTransform.isValuesXmlEntry("res/values/values.xml"));
+        assertTrue(SanitizePromptHeaderTransform.isValuesXmlEntry("res/values-night-v31/values.xml"));
+        assertTrue(SanitizePromptHeaderTransform.isValuesXmlEntry("lib/res/values-fr/strings.xml"));
+        assertFalse(SanitizePromptHeaderTransform.isValuesXmlEntry("res/layout/values.xml"));
+        assertFalse(SanitizePromptHeaderTransform.isValuesXmlEntry("values/strings.xml"));
+        assertFalse(SanitizePromptHeaderTransform.isValuesXmlEntry("resources/values/strings.xml"));
+        assertFalse(SanitizePromptHeaderTransform.isValuesXmlEntry("res/values/strings.json"));
+        assertFalse(SanitizePromptHeaderTransform.isValuesXmlEntry("res/values/nested/strings.xml"));
+    }
+
     private Path createValuesFile(String contents) throws IOException {
         File resDir = temporaryFolder.newFolder("res", "values");
         Path file = resDir.toPath().resolve("strings.xml");
@@ -212,6 +635,55 @@ public final class SanitizePromptHeaderTransformTest {
         return file;
     }
 
+    private File createArchive(Map<String, byte[]> entries) throws IOException {
+        return createArchive(entries, "library.aar", System.currentTimeMillis());
+    }
+
+    private File createArchive(Map<String, byte[]> entries, String name, long time) throws IOException {
+        File archive = temporaryFolder.newFile(name);
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                zipEntry.setTime(time);
+                zos.putNextEntry(zipEntry);
+                zos.write(entry.getValue());
+                zos.closeEntry();
+            }
+        }
+        return archive;
+    }
+
+    private static Map<String, byte[]> readArchive(File archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(archive)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (InputStream stream = zip.getInputStream(entry)) {
+                    entries.put(entry.getName(), stream.readAllBytes());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static String extractPromptHeader(byte[] values) {
+        String document = new String(values, StandardCharsets.UTF_8);
+        int start = document.indexOf("<string name='prompt_header'>");
+        return document.substring(start, document.indexOf("</string>", start) + "</string>".length());
+    }
+
+    private static String sha256(File file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(file.toPath())));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
     private static boolean sanitize(File file) {
         try {
             return (Boolean) SANITIZE_FILE_METHOD.invoke(null, file);
@@ -0,0 +1,73 @@
+package com.lumen.build;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class TransformMemoTest {
+    @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void keyFor_dependsOnContentAndRulesOnly() throws IOException {
+        TransformMemo memo = new TransformMemo(8);
+        File first = write("com.example-library-1.0.aar", "same bytes");
+        File second = write("org.mirror-library-1.0.aar", "same bytes");
+        File other = write("other.aar", "other bytes");
+
+        assertEquals(memo.keyFor(first, "10;rules"), memo.keyFor(second, "10;rules"));
+        assertNotEquals(memo.keyFor(first, "10;rules"), memo.keyFor(first, "11;rules"));
+        assertNotEquals(memo.keyFor(first, "10;rules"), memo.keyFor(other, "10;rules"));
+    }
+
+    @Test
+    public void lookup_dropsResultsWhoseOutputWasDeleted() throws IOException {
+        TransformMemo memo = new TransformMemo(8);
+        File output = write("library-sanitized.aar", "sanitized");
+        TransformMemo.Result result = new TransformMemo.Result(output);
+        memo.remember("key", result);
+        assertSame(result, memo.lookup("key"));
+
+        Files.delete(output.toPath());
+        assertNull(memo.lookup("key"));
+    }
+
+    @Test
+    public void remember_evictsLeastRecentlyUsedResult() throws IOException {
+        TransformMemo memo = new TransformMemo(2);
+        TransformMemo.Result rewritten = new TransformMemo.Result(write("library-sanitized.aar", "sanitized"));
+        memo.remember("a", rewritten);
+        memo.remember("b", rewritten);
+        memo.lookup("a");
+        memo.remember("c", rewritten);
+
+        assertSame(rewritten, memo.lookup("a"));
+        assertNull(memo.lookup("b"));
+        assertSame(rewritten, memo.lookup("c"));
+    }
+
+    @Test
+    public void materialize_producesIdenticalOutput() throws IOException {
+        File source = write("library-sanitized.aar", "sanitized archive");
+        File target = new File(temporaryFolder.getRoot(), "transformed/library-sanitized.aar");
+
+        TransformMemo.materialize(source, target);
+
+        assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath()));
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File file = temporaryFolder.newFile(name);
+        Files.writeString(file.toPath(), contents, StandardCharsets.UTF_8);
+        return file;
+    }
+}